@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.annotation.CommandParameter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command handler used by the benchmarks.
+ *
+ * @author Martin Absmeier
+ */
+public class BenchmarkHandler {
+
+    @Command(description = "Adds two numbers")
+    public int add(@CommandParameter(name = "a") int a, @CommandParameter(name = "b") int b) {
+        return a + b;
+    }
+
+    @Command(description = "Returns the given text")
+    public String echo(@CommandParameter(name = "text") String text) {
+        return text;
+    }
+
+    @Command(description = "Sums all numbers")
+    public long sum(@CommandParameter(name = "numbers") int... numbers) {
+        long sum = 0;
+        for (int number : numbers) {
+            sum += number;
+        }
+        return sum;
+    }
+
+    @Command(description = "Takes all elementary types")
+    public String primitives(int i, long l, double d, boolean b) {
+        return null;
+    }
+
+    @Command(description = "Returns a nested list")
+    public List<List<Object>> nested() {
+        return Arrays.asList(Arrays.asList("a", 1, 2L), Arrays.asList("b", new int[]{1, 2, 3}));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of CommandTable.lookupCommand for tables of different size.
+ *
+ * @author Martin Absmeier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandLookupBenchmark {
+
+    private static final int DISCRIMINATORS = 1024;
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int commandCount;
+
+    private CommandTable commandTable;
+    private String[] discriminators;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        commandTable = new CommandTable(new DashJoinedNamer(true));
+        CommandDefinition definition = CommandDefinition.forMethod(BenchmarkHandler.class.getMethod("echo", String.class));
+        BenchmarkHandler handler = new BenchmarkHandler();
+        // explicit names avoid the abbreviation probing, which is not what is measured here
+        for (int i = 0; i < commandCount; i++) {
+            commandTable.addCommand(withName(definition, "command-" + i), handler, "");
+        }
+
+        Random random = new Random(42);
+        discriminators = new String[DISCRIMINATORS];
+        for (int i = 0; i < DISCRIMINATORS; i++) {
+            discriminators[i] = "command-" + random.nextInt(commandCount);
+        }
+    }
+
+    @Benchmark
+    public ShellCommand lookupCommand() {
+        String discriminator = discriminators[next++ & (DISCRIMINATORS - 1)];
+        return commandTable.lookupCommand(discriminator, 1);
+    }
+
+    static CommandDefinition withName(CommandDefinition definition, String name) {
+        return CommandDefinition.builder()
+            .declaringClass(definition.getDeclaringClass())
+            .methodName(definition.getMethodName())
+            .parameterTypes(definition.getParameterTypes())
+            .varArgs(definition.isVarArgs())
+            .returnType(definition.getReturnType())
+            .name(name)
+            .description(definition.getDescription())
+            .shortcut(definition.getShortcut())
+            .header(definition.getHeader())
+            .parameters(definition.getParameters())
+            .invoker(definition.getInvoker())
+            .method(definition.getMethod())
+            .build();
+    }
+}
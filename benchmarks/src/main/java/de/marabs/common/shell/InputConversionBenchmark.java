@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.input.ArgumentBinder;
+import de.marabs.common.shell.input.InputConversion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of InputConversion.convertToParameters for elementary types, varargs and a custom converter,
+ * and of the pre-bound ArgumentBinder a command uses.
+ *
+ * @author Martin Absmeier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InputConversionBenchmark {
+
+    private static final Class<?>[] PRIMITIVE_TYPES = {int.class, long.class, double.class, boolean.class};
+    private static final Class<?>[] VARARGS_TYPES = {int[].class};
+    private static final Class<?>[] CUSTOM_TYPES = {Point.class, Point.class};
+
+    private InputConversion inputConversion;
+    private TokenSpans primitiveLine;
+    private TokenSpans varArgsLine;
+    private TokenSpans customLine;
+    private ArgumentBinder primitiveBinder;
+    private ArgumentBinder varArgsBinder;
+
+    @Setup
+    public void setUp() {
+        inputConversion = new InputConversion();
+        inputConversion.addConverter((original, toClass) -> {
+            if (toClass.equals(Point.class)) {
+                int comma = original.indexOf(',');
+                return new Point(Integer.parseInt(original.substring(0, comma)), Integer.parseInt(original.substring(comma + 1)));
+            }
+            return null;
+        });
+
+        primitiveLine = new TokenSpans().tokenize("primitives 42 1234567890123 3.14159 true");
+        StringBuilder builder = new StringBuilder("sum");
+        for (int i = 0; i < 1000; i++) {
+            builder.append(' ').append(i * 7);
+        }
+        varArgsLine = new TokenSpans().tokenize(builder.toString());
+        customLine = new TokenSpans().tokenize("distance 1,2 30,40");
+        primitiveBinder = ArgumentBinder.of(inputConversion, PRIMITIVE_TYPES, false);
+        varArgsBinder = ArgumentBinder.of(inputConversion, VARARGS_TYPES, true);
+    }
+
+    @Benchmark
+    public Object[] primitives() {
+        return inputConversion.convertToParameters(primitiveLine, PRIMITIVE_TYPES, false);
+    }
+
+    @Benchmark
+    public Object[] varArgs() {
+        return inputConversion.convertToParameters(varArgsLine, VARARGS_TYPES, true);
+    }
+
+    @Benchmark
+    public Object[] boundPrimitives() {
+        return primitiveBinder.bind(primitiveLine);
+    }
+
+    @Benchmark
+    public Object[] boundVarArgs() {
+        return varArgsBinder.bind(varArgsLine);
+    }
+
+    @Benchmark
+    public Object[] customConverter() {
+        return inputConversion.convertToParameters(customLine, CUSTOM_TYPES, false);
+    }
+
+    public static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
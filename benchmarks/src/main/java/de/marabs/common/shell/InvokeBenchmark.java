@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of ShellCommand.invoke, with plain Method.invoke as baseline.
+ *
+ * @author Martin Absmeier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InvokeBenchmark {
+
+    private BenchmarkHandler handler;
+    private Method addMethod;
+    private ShellCommand addCommand;
+    private ShellCommand echoCommand;
+    private Object[] addParameters;
+    private Object[] echoParameters;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        handler = new BenchmarkHandler();
+        addMethod = BenchmarkHandler.class.getMethod("add", int.class, int.class);
+        addCommand = new ShellCommand(handler, addMethod, "", "add");
+        echoCommand = new ShellCommand(handler, BenchmarkHandler.class.getMethod("echo", String.class), "", "echo");
+        addParameters = new Object[]{1, 2};
+        echoParameters = new Object[]{"text"};
+    }
+
+    @Benchmark
+    public Object invokeAdd() {
+        return addCommand.invoke(addParameters);
+    }
+
+    @Benchmark
+    public Object invokeEcho() {
+        return echoCommand.invoke(echoParameters);
+    }
+
+    @Benchmark
+    public Object methodInvokeAdd() throws ReflectiveOperationException {
+        return addMethod.invoke(handler, addParameters);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.otput.OutputConversion;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of ConsoleIO.output on nested collections, written to a discarding stream.
+ *
+ * @author Martin Absmeier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OutputBenchmark {
+
+    @Param({"10", "1000"})
+    public int width;
+
+    private ConsoleIO consoleIO;
+    private OutputConversion outputConversion;
+    private List<Object> nested;
+    private int[] numbers;
+
+    @Setup
+    public void setUp() {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        consoleIO = new ConsoleIO(new BufferedReader(new StringReader("")), discard, discard);
+        outputConversion = new OutputConversion();
+
+        nested = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            List<Object> row = new ArrayList<>();
+            row.add("row-" + i);
+            row.add(i);
+            row.add(new int[]{i, i + 1, i + 2});
+            nested.add(row);
+        }
+        numbers = new int[width * 10];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = i;
+        }
+    }
+
+    @Benchmark
+    public void outputNestedCollection() {
+        consoleIO.output(nested, outputConversion);
+    }
+
+    @Benchmark
+    public void outputPrimitiveArray() {
+        consoleIO.output(numbers, outputConversion);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmark of Shell.processLine: tokenize, lookup, convert, invoke and output.
+ *
+ * @author Martin Absmeier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProcessLineBenchmark {
+
+    @Param({"add 1 2", "echo \"some quoted text\"", "sum 1 2 3 4 5 6 7 8 9 10"})
+    public String line;
+
+    private Shell shell;
+
+    @Setup
+    public void setUp() {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        ConsoleIO io = new ConsoleIO(new BufferedReader(new StringReader("")), discard, discard);
+        ShellConfig config = ShellConfig.builder().input(io).output(io).auxHandlers(new HashMap<>()).displayTime(false).build();
+        shell = new Shell(config, new CommandTable(new DashJoinedNamer(true)), Collections.singletonList("bench"));
+        shell.addMainHandler(new BenchmarkHandler(), "");
+    }
+
+    @Benchmark
+    public void processLine() {
+        shell.processLine(line);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of registering the commands of a large generated handler, whose auto-generated abbreviations collide.
+ * The time per command stays the same for all table sizes, i.e. registration is linear.
+ *
+ * @author Martin Absmeier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegistrationBenchmark {
+
+    /**
+     * Number of distinct first abbreviations, the remaining commands have to probe their second one.
+     */
+    private static final int SHORT_ABBREVIATIONS = 64;
+
+    @Param({"1000", "10000", "40000"})
+    public int commandCount;
+
+    private List<CommandDefinition> definitions;
+    private CommandNamer.NamingInfo[] names;
+    private int nextName;
+    private BenchmarkHandler handler;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        handler = new BenchmarkHandler();
+        CommandDefinition definition = CommandDefinition.forMethod(BenchmarkHandler.class.getMethod("echo", String.class));
+        definitions = new ArrayList<>(commandCount);
+        names = new CommandNamer.NamingInfo[commandCount];
+        for (int i = 0; i < commandCount; i++) {
+            definitions.add(definition);
+            names[i] = new CommandNamer.NamingInfo("generated-command-" + i,
+                                                   new String[]{"g" + (i % SHORT_ABBREVIATIONS), "gc" + i});
+        }
+    }
+
+    @Benchmark
+    public CommandTable addCommands() {
+        CommandTable table = newTable();
+        table.addCommands(definitions, handler, "");
+        return table;
+    }
+
+    @Benchmark
+    public CommandTable addCommandsOneByOne() {
+        CommandTable table = newTable();
+        for (CommandDefinition definition : definitions) {
+            table.addCommand(definition, handler, "");
+        }
+        return table;
+    }
+
+    // #################################################################################################################
+    private CommandTable newTable() {
+        // all definitions share one method, so the namer hands out the generated names in registration order
+        nextName = 0;
+        return new CommandTable(method -> names[nextName++]);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the tokenizer: Token.tokenize, the reference state machine, against the allocation free TokenSpans.
+ *
+ * @author Martin Absmeier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizeBenchmark {
+
+    @Param({"short", "long", "quoted"})
+    public String lineKind;
+
+    private String line;
+    private TokenSpans spans;
+
+    @Setup
+    public void setUp() {
+        switch (lineKind) {
+            case "short":
+                line = "add 1 2";
+                break;
+            case "long":
+                StringBuilder builder = new StringBuilder("sum");
+                for (int i = 0; i < 200; i++) {
+                    builder.append(' ').append(i * 31);
+                }
+                line = builder.toString();
+                break;
+            default:
+                line = "echo \"a \"\"quoted\"\" text\" 'it''s' \"C:\\Program Files\\shell\" a\"b\"c # comment";
+                break;
+        }
+        spans = new TokenSpans();
+    }
+
+    @Benchmark
+    public List<Token> tokenize() {
+        return Token.tokenize(line);
+    }
+
+    @Benchmark
+    public int tokenizeSpans() {
+        return spans.tokenize(line).size();
+    }
+
+    @Benchmark
+    public int tokenizeSpansAndMaterialize() {
+        spans.tokenize(line);
+        int length = 0;
+        for (int i = 0; i < spans.size(); i++) {
+            length += spans.getString(i).length();
+        }
+        return length;
+    }
+}
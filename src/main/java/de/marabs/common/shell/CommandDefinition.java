@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.exception.ShellException;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Definition of a command method, i.e. everything the Shell needs to know about it independent of the handler
+ * instance the command is invoked on.
+ * <p>
+ * Definitions are either created by reflection ({@link #forMethod(Method)}) or by a {@link CommandRegistry}
+ * generated at compile time.
+ *
+ * @author Martin Absmeier
+ */
+@Getter
+public class CommandDefinition {
+
+    private final Class<?> declaringClass;
+    private final String methodName;
+    @Getter(AccessLevel.NONE)
+    private final Class<?>[] parameterTypes;
+    private final boolean varArgs;
+    private final Class<?> returnType;
+    private final String name;
+    private final String description;
+    private final String shortcut;
+    private final String header;
+    @Getter(AccessLevel.NONE)
+    private final ShellCommandParameter[] parameters;
+    private final CommandInvoker invoker;
+    @Getter(AccessLevel.NONE)
+    private Method method;
+
+    @Builder
+    public CommandDefinition(Class<?> declaringClass, String methodName, Class<?>[] parameterTypes, boolean varArgs,
+                             Class<?> returnType, String name, String description, String shortcut, String header,
+                             ShellCommandParameter[] parameters, CommandInvoker invoker, Method method) {
+        this.declaringClass = requireNonNull(declaringClass, "NULL is not permitted as value for 'declaringClass' parameter.");
+        this.methodName = requireNonNull(methodName, "NULL is not permitted as value for 'methodName' parameter.");
+        this.parameterTypes = isNull(parameterTypes) ? new Class<?>[0] : parameterTypes;
+        this.varArgs = varArgs;
+        this.returnType = isNull(returnType) ? void.class : returnType;
+        this.name = isNull(name) ? "" : name;
+        this.description = isNull(description) ? "" : description;
+        this.shortcut = isNull(shortcut) ? "" : shortcut;
+        this.header = isNull(header) ? "" : header;
+        this.parameters = requireNonNull(parameters, "NULL is not permitted as value for 'parameters' parameter.");
+        this.invoker = requireNonNull(invoker, "NULL is not permitted as value for 'invoker' parameter.");
+        this.method = method;
+        assert this.parameters.length == this.parameterTypes.length;
+    }
+
+    /**
+     * Creates the definition of the given method by reflection.
+     *
+     * @param method Command method, usually annotated with {@link Command}
+     * @return definition of the method
+     */
+    public static CommandDefinition forMethod(Method method) {
+        requireNonNull(method, "NULL is not permitted as value for 'method' parameter.");
+
+        Command annotation = method.getAnnotation(Command.class);
+        return CommandDefinition.builder()
+            .declaringClass(method.getDeclaringClass())
+            .methodName(method.getName())
+            .parameterTypes(method.getParameterTypes())
+            .varArgs(method.isVarArgs())
+            .returnType(method.getReturnType())
+            .name(annotation != null ? annotation.name() : null)
+            .description(annotation != null ? annotation.description() : null)
+            .shortcut(annotation != null ? annotation.shortcut() : null)
+            .header(annotation != null ? annotation.header() : null)
+            .parameters(ShellCommandParameter.forMethod(method))
+            .invoker(MethodHandleInvoker.bind(method))
+            .method(method)
+            .build();
+    }
+
+    public Class<?>[] getParameterTypes() {
+        return parameterTypes.clone();
+    }
+
+    public ShellCommandParameter[] getParameters() {
+        return parameters.clone();
+    }
+
+    public int getArity() {
+        return parameterTypes.length;
+    }
+
+    /**
+     * Returns the command method.
+     * Definitions of a generated registry resolve the method only when it is asked for.
+     *
+     * @return the command method
+     */
+    public Method getMethod() {
+        if (isNull(method)) {
+            try {
+                method = declaringClass.getMethod(methodName, parameterTypes);
+            } catch (NoSuchMethodException ex) {
+                throw new ShellException("Can not resolve command method " + declaringClass.getName() + "." + methodName, ex);
+            }
+        }
+        return method;
+    }
+}
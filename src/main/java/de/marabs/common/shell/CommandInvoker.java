@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invoker of a command method, bound once when the command is registered.
+ *
+ * @author Martin Absmeier
+ */
+@FunctionalInterface
+public interface CommandInvoker {
+
+    /**
+     * Invokes the command method on the given handler.
+     *
+     * @param handler    Object the command method is invoked on (ignored for static methods)
+     * @param parameters Already converted parameters of the command
+     * @return value returned by the command method, NULL for void methods
+     * @throws InvocationTargetException if the command method itself threw an exception
+     * @throws Exception                 if the command method could not be invoked at all
+     */
+    Object invoke(Object handler, Object[] parameters) throws Exception;
+}
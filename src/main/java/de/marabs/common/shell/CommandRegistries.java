@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import java.util.Optional;
+
+/**
+ * Looks up the generated {@link CommandRegistry} of handler classes.
+ *
+ * @author Martin Absmeier
+ */
+final class CommandRegistries {
+
+    static final String REGISTRY_SUFFIX = "_CommandRegistry";
+
+    private static final ClassValue<Optional<CommandRegistry>> REGISTRIES = new ClassValue<Optional<CommandRegistry>>() {
+        @Override
+        protected Optional<CommandRegistry> computeValue(Class<?> handlerClass) {
+            return loadRegistry(handlerClass);
+        }
+    };
+
+    /**
+     * Returns the generated registry of the given handler class.
+     *
+     * @param handlerClass Class of the handler
+     * @return the registry or NULL if none was generated for the class
+     */
+    static CommandRegistry forClass(Class<?> handlerClass) {
+        return REGISTRIES.get(handlerClass).orElse(null);
+    }
+
+    /**
+     * Returns the name of the registry generated for the given binary class name,
+     * e.g. com.acme.Outer$Inner --- com.acme.Outer_Inner_CommandRegistry.
+     *
+     * @param binaryName Binary name of the handler class
+     * @return name of the registry class
+     */
+    static String registryName(String binaryName) {
+        int packageEnd = binaryName.lastIndexOf('.');
+        return binaryName.substring(0, packageEnd + 1)
+            + binaryName.substring(packageEnd + 1).replace('$', '_')
+            + REGISTRY_SUFFIX;
+    }
+
+    // #################################################################################################################
+    private static Optional<CommandRegistry> loadRegistry(Class<?> handlerClass) {
+        ClassLoader classLoader = handlerClass.getClassLoader();
+        if (classLoader == null || handlerClass.isAnonymousClass() || handlerClass.isLocalClass()) {
+            return Optional.empty();
+        }
+        try {
+            Class<?> registryClass = Class.forName(registryName(handlerClass.getName()), true, classLoader);
+            if (!CommandRegistry.class.isAssignableFrom(registryClass)) {
+                return Optional.empty();
+            }
+            return Optional.of((CommandRegistry) registryClass.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return Optional.empty();
+        }
+    }
+
+    private CommandRegistries() {
+        // this class has only static methods.
+    }
+}
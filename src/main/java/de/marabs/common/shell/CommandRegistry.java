@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.input.InputConverter;
+import de.marabs.common.shell.otput.OutputConverter;
+
+import java.util.List;
+
+/**
+ * Registry of all commands and declared converters of one handler class.
+ * <p>
+ * Implementations are generated at compile time by the {@code CommandRegistryProcessor} and are named after the
+ * handler class with the suffix {@code _CommandRegistry}. If the Shell finds a registry for a
+ * handler, it uses it instead of scanning the handler by reflection.
+ *
+ * @author Martin Absmeier
+ */
+public interface CommandRegistry {
+
+    /**
+     * Returns the definitions of all commands of the handler class.
+     *
+     * @return command definitions
+     */
+    List<CommandDefinition> getCommands();
+
+    /**
+     * Returns the input converters declared by the handler (fields named CLI_INPUT_CONVERTERS...).
+     *
+     * @param handler Handler instance
+     * @return declared input converters
+     */
+    List<InputConverter> getInputConverters(Object handler);
+
+    /**
+     * Returns the output converters declared by the handler (fields named CLI_OUTPUT_CONVERTERS...).
+     *
+     * @param handler Handler instance
+     * @return declared output converters
+     */
+    List<OutputConverter> getOutputConverters(Object handler);
+}
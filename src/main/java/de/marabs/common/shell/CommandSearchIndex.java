@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Full-text index over the commands of a command table, used by ?search.
+ * <p>
+ * The words of a command's name, description and parameter names and descriptions are kept in an inverted index,
+ * words of the name count twice. Commands are ranked by TF-IDF: the more often a searched word occurs in a command
+ * and the fewer commands it occurs in, the higher the command's score. Commands are indexed when they are searched
+ * for the first time, the table only grows, so the index is extended by the commands added since the last search.
+ *
+ * @author Martin Absmeier
+ */
+public class CommandSearchIndex {
+
+    private static final int NAME_WEIGHT = 2;
+
+    private final CommandTable commandTable;
+    private final List<ShellCommand> commands = new ArrayList<>();
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+
+    public CommandSearchIndex(CommandTable commandTable) {
+        this.commandTable = requireNonNull(commandTable, "NULL is not permitted as value for commandTable.");
+    }
+
+    public CommandTable getCommandTable() {
+        return commandTable;
+    }
+
+    /**
+     * Finds the commands containing any of the words of the query.
+     *
+     * @param query      Words to search for, separated by whitespace or punctuation
+     * @param maxResults Maximum number of commands returned
+     * @return the commands sorted by descending score, commands with the same score in the order of the table
+     */
+    public List<ShellCommand> search(String query, int maxResults) {
+        update();
+
+        double[] scores = new double[commands.size()];
+        List<Integer> hits = new ArrayList<>();
+        for (String term : terms(query)) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings == null) {
+                continue;
+            }
+            double idf = Math.log(1.0 + (double) commands.size() / postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                int command = postings.commands[i];
+                if (scores[command] == 0.0) {
+                    hits.add(command);
+                }
+                scores[command] += postings.frequencies[i] * idf;
+            }
+        }
+
+        hits.sort((a, b) -> scores[a] != scores[b] ? Double.compare(scores[b], scores[a]) : Integer.compare(a, b));
+        List<ShellCommand> result = new ArrayList<>(Math.min(maxResults, hits.size()));
+        for (int i = 0; i < hits.size() && i < maxResults; i++) {
+            result.add(commands.get(hits.get(i)));
+        }
+        return result;
+    }
+
+    // #################################################################################################################
+
+    /**
+     * Indexes the commands added to the table since the last search.
+     */
+    private void update() {
+        List<ShellCommand> table = commandTable.getCommandTable();
+        for (int index = commands.size(); index < table.size(); index++) {
+            ShellCommand command = table.get(index);
+            commands.add(command);
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            addTerms(frequencies, command.getName(), NAME_WEIGHT);
+            addTerms(frequencies, command.getDescription(), 1);
+            for (ShellCommandParameter parameter : command.getParamSpecs()) {
+                addTerms(frequencies, parameter.getName(), 1);
+                addTerms(frequencies, parameter.getDescription(), 1);
+            }
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postingsByTerm.computeIfAbsent(entry.getKey(), key -> new Postings()).add(index, entry.getValue());
+            }
+        }
+    }
+
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : terms(text)) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+    }
+
+    /**
+     * Splits a text into lower case words at every character which is neither a letter nor a digit, and between
+     * the words of camel case names.
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char ch = i < text.length() ? text.charAt(i) : ' ';
+            boolean wordChar = Character.isLetterOrDigit(ch);
+            boolean camelCase = wordChar && start >= 0 && Character.isUpperCase(ch) && Character.isLowerCase(text.charAt(i - 1));
+            if (start >= 0 && (!wordChar || camelCase)) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+            if (wordChar && start < 0) {
+                start = i;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Indices of the commands a term occurs in, in ascending order, and how often it occurs in each.
+     */
+    private static final class Postings {
+        private int[] commands = new int[4];
+        private int[] frequencies = new int[4];
+        private int size = 0;
+
+        private void add(int command, int frequency) {
+            if (size == commands.length) {
+                int capacity = size * 2;
+                int[] grownCommands = new int[capacity];
+                int[] grownFrequencies = new int[capacity];
+                System.arraycopy(commands, 0, grownCommands, 0, size);
+                System.arraycopy(frequencies, 0, grownFrequencies, 0, size);
+                commands = grownCommands;
+                frequencies = grownFrequencies;
+            }
+            commands[size] = command;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.util.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocation statistics of a {@link ShellCommand}: number of invocations and errors and a latency histogram.
+ * The histogram is created on the first invocation, so commands never used cost no memory.
+ *
+ * @author Martin Absmeier
+ */
+public class CommandStatistics {
+
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final AtomicLong started = new AtomicLong(NOT_STARTED);
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile LatencyHistogram latencies;
+
+    /**
+     * Records an invocation.
+     *
+     * @param nanos  how long the invocation took
+     * @param failed true if the command threw an exception
+     */
+    public void record(long nanos, boolean failed) {
+        record(nanos, failed, System.nanoTime());
+    }
+
+    void record(long nanos, boolean failed, long now) {
+        started.compareAndSet(NOT_STARTED, now - nanos);
+        invocations.increment();
+        if (failed) {
+            errors.increment();
+        }
+        histogram().record(nanos);
+    }
+
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @param percentile the percentile, e.g. 99.9
+     * @return the latency in nanoseconds at the percentile
+     */
+    public long getLatencyAtPercentile(double percentile) {
+        LatencyHistogram histogram = latencies;
+        return histogram == null ? 0 : histogram.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return the maximum latency in nanoseconds
+     */
+    public long getMaxLatency() {
+        LatencyHistogram histogram = latencies;
+        return histogram == null ? 0 : histogram.getMax();
+    }
+
+    /**
+     * @return the mean latency in nanoseconds
+     */
+    public double getMeanLatency() {
+        LatencyHistogram histogram = latencies;
+        return histogram == null ? 0 : histogram.getMean();
+    }
+
+    /**
+     * Returns how many invocations per second the command had since its first invocation or the last reset,
+     * measured by wall-clock time.
+     *
+     * @return invocations per second, 0 if the command was not invoked
+     */
+    public double getThroughput() {
+        return getThroughput(System.nanoTime());
+    }
+
+    double getThroughput(long now) {
+        long start = started.get();
+        long elapsed = now - start;
+        if (start == NOT_STARTED || elapsed <= 0) {
+            return 0;
+        }
+        return getInvocations() / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public void reset() {
+        started.set(NOT_STARTED);
+        invocations.reset();
+        errors.reset();
+        LatencyHistogram histogram = latencies;
+        if (histogram != null) {
+            histogram.reset();
+        }
+    }
+
+    // #################################################################################################################
+    private LatencyHistogram histogram() {
+        LatencyHistogram histogram = latencies;
+        if (histogram == null) {
+            synchronized (this) {
+                histogram = latencies;
+                if (histogram == null) {
+                    histogram = new LatencyHistogram();
+                    latencies = histogram;
+                }
+            }
+        }
+        return histogram;
+    }
+}
@@ -15,111 +15,459 @@
  */
 package de.marabs.common.shell;
 
-import de.marabs.common.shell.annotation.Command;
 import de.marabs.common.shell.exception.ShellException;
+import de.marabs.common.shell.util.RadixTrie;
 import lombok.Getter;
 
 import java.lang.reflect.Method;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Command table is responsible for managing a lot of ShellCommands and is like a dictionary,
  * because its main function is to return a command by name.
+ * <p>
+ * Every command is indexed by its full denotations (prefix + name and prefix + abbreviation), so looking up
+ * a command does not depend on the size of the table. The denotations are also kept in a radix trie, which finds
+ * the commands starting with a prefix in sorted order and the denotations closest to an unknown one, which are
+ * suggested to the user.
+ * <p>
+ * The same index decides whether an abbreviation proposed by the {@link CommandNamer} is still free, so registering
+ * a command takes constant time and registering a handler with many commands is linear in their number.
+ * <p>
+ * A table can be layered over a base table, whose commands it contains without copying its index. Subshells use
+ * this to share the commands of the aux handlers, which are the same for all of them. A base table can no longer be
+ * changed.
  *
  * @author Martin Absmeier
  */
 public class CommandTable {
 
+    private static final int MAX_SUGGESTIONS = 3;
+
     @Getter
     private final List<ShellCommand> commandTable;
     @Getter
     private final CommandNamer namer;
+    private final Map<String, CommandBucket> commandsByDenotation;
+    private final RadixTrie<ShellCommand> denotations = new RadixTrie<>();
+    /**
+     * Table whose commands are the first commands of this table, NULL if there is none.
+     */
+    @Getter
+    private final CommandTable base;
+    /**
+     * The handlers added by {@link #addHandler(Object, String)} as prefix and handler in the order they were added.
+     */
+    private final List<Map.Entry<String, Object>> handlers = new ArrayList<>();
+    /**
+     * Whether the table only contains the commands of the handlers, i.e. no command was added directly.
+     */
+    private boolean handlersOnly = true;
+    private boolean frozen = false;
+    /**
+     * Incremented whenever a command is added, so that callers caching lookup results can tell whether they are
+     * still valid.
+     */
+    @Getter
+    private int version = 0;
 
     public CommandTable(CommandNamer namer) {
         commandTable = new ArrayList<>();
+        commandsByDenotation = new HashMap<>();
         this.namer = namer;
+        this.base = null;
+    }
+
+    /**
+     * Creates a table containing the commands of the given base table, followed by the commands added to it. Adding
+     * a command to the base table is not possible any more.
+     *
+     * @param base Table whose commands are shared, it uses the same namer
+     */
+    public CommandTable(CommandTable base) {
+        requireNonNull(base, "NULL is not permitted as value for 'base' parameter.");
+        base.frozen = true;
+        commandTable = new ArrayList<>(base.commandTable);
+        commandsByDenotation = new HashMap<>();
+        this.namer = base.namer;
+        this.base = base;
+    }
+
+    /**
+     * Creates a table with the commands of the given handlers, which are added in the iteration order of the map.
+     *
+     * @param namer    Namer of the auto-named commands
+     * @param handlers Handlers by prefix of their commands
+     * @return the table
+     */
+    public static CommandTable ofHandlers(CommandNamer namer, Map<String, Object> handlers) {
+        CommandTable table = new CommandTable(namer);
+        for (Map.Entry<String, Object> entry : handlers.entrySet()) {
+            table.addHandler(entry.getValue(), entry.getKey());
+        }
+        return table;
+    }
+
+    /**
+     * Whether the table contains exactly the commands {@link #ofHandlers(CommandNamer, Map)} creates for the given
+     * handlers, i.e. it was created for the same handler instances and prefixes in the same order.
+     *
+     * @param handlers Handlers by prefix of their commands
+     * @return TRUE if the table can be used instead of a new one for the handlers
+     */
+    public boolean consistsOf(Map<String, Object> handlers) {
+        if (!handlersOnly || base != null || this.handlers.size() != handlers.size()) {
+            return false;
+        }
+        Iterator<Map.Entry<String, Object>> added = this.handlers.iterator();
+        for (Map.Entry<String, Object> entry : handlers.entrySet()) {
+            Map.Entry<String, Object> handler = added.next();
+            if (handler.getValue() != entry.getValue() || !handler.getKey().equals(entry.getKey())) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void addMethod(Method method, Object handler, String prefix) {
         requireNonNull(method, "NULL is not permitted as value for 'method' parameter.");
+        handlersOnly = false;
+        addCommand(CommandDefinition.forMethod(method), handler, prefix);
+    }
+
+    /**
+     * Adds the commands of the given methods in the given order. The abbreviations are the same as if the methods
+     * were added one by one.
+     *
+     * @param methods Command methods of the handler
+     * @param handler Handler the methods are invoked on
+     * @param prefix  Prefix of the commands
+     */
+    public void addMethods(Collection<Method> methods, Object handler, String prefix) {
+        requireNonNull(methods, "NULL is not permitted as value for 'methods' parameter.");
+        handlersOnly = false;
+        List<CommandDefinition> definitions = new ArrayList<>(methods.size());
+        for (Method method : methods) {
+            requireNonNull(method, "NULL is not permitted as element of 'methods' parameter.");
+            definitions.add(CommandDefinition.forMethod(method));
+        }
+        registerCommands(definitions, handler, prefix);
+    }
 
-        Command annotation = method.getAnnotation(Command.class);
+    /**
+     * Adds the commands of the given definitions in the given order. The abbreviations are the same as if the
+     * definitions were added one by one.
+     *
+     * @param definitions Command definitions
+     * @param handler     Handler the commands are invoked on
+     * @param prefix      Prefix of the commands
+     */
+    public void addCommands(Collection<CommandDefinition> definitions, Object handler, String prefix) {
+        requireNonNull(definitions, "NULL is not permitted as value for 'definitions' parameter.");
+        handlersOnly = false;
+        registerCommands(definitions, handler, prefix);
+    }
+
+    /**
+     * Adds all commands of a handler. The commands of a handler class are determined once and shared by all its
+     * handlers, see {@link HandlerMetadata}. A handler which the base table already contains with the same prefix
+     * is not added again.
+     *
+     * @param handler Handler object
+     * @param prefix  Prefix of the commands
+     */
+    public void addHandler(Object handler, String prefix) {
+        requireNonNull(handler, "NULL is not permitted as value for 'handler' parameter.");
+        if (base != null && base.containsHandler(handler, prefix)) {
+            return;
+        }
+        registerCommands(HandlerMetadata.forClass(handler.getClass()).getCommands(), handler, prefix);
+        handlers.add(new SimpleImmutableEntry<>(prefix, handler));
+    }
+
+    public void addCommand(CommandDefinition definition, Object handler, String prefix) {
+        requireNonNull(definition, "NULL is not permitted as value for 'definition' parameter.");
+        handlersOnly = false;
+        registerCommand(definition, handler, prefix);
+        version++;
+    }
+
+    public List<ShellCommand> commandsByName(String discriminator) {
+        CommandBucket bucket = bucket(discriminator);
+        if (bucket == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(bucket.commands);
+    }
+
+    /**
+     * Finds the commands whose prefixed name or abbreviation starts with the given string.
+     *
+     * @param prefix Start of the denotation, the empty string finds all commands
+     * @return the commands sorted by denotation, a command denoted twice is listed at its first denotation
+     */
+    public List<ShellCommand> commandsStartingWith(String prefix) {
+        requireNonNull(prefix, "NULL is not permitted as value for 'prefix' parameter.");
+        Set<ShellCommand> result;
+        if (base == null) {
+            result = new LinkedHashSet<>(denotations.valuesWithPrefix(prefix));
+        } else {
+            result = new LinkedHashSet<>();
+            for (Map.Entry<String, ShellCommand> denotation : denotationsWithPrefix(prefix)) {
+                result.add(denotation.getValue());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * @param prefix Start of the denotation
+     * @return the prefixed names and abbreviations starting with the given string in sorted order
+     */
+    public List<String> denotationsStartingWith(String prefix) {
+        requireNonNull(prefix, "NULL is not permitted as value for 'prefix' parameter.");
+        if (base == null) {
+            return denotations.keysWithPrefix(prefix);
+        }
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, ShellCommand> denotation : denotationsWithPrefix(prefix)) {
+            if (result.isEmpty() || !result.get(result.size() - 1).equals(denotation.getKey())) {
+                result.add(denotation.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the prefixed names and abbreviations closest to a misspelled one. A single typo is tolerated in short
+     * names, two in names of six characters and more.
+     *
+     * @param discriminator The misspelled name
+     * @return up to three denotations sorted by their distance to the given one
+     */
+    public List<String> suggestCommands(String discriminator) {
+        int maxDistance = discriminator.length() < 6 ? 1 : 2;
+        List<String> result = denotations.closestKeys(discriminator, maxDistance, MAX_SUGGESTIONS);
+        if (base != null) {
+            // rank the closest denotations of both tables together
+            RadixTrie<String> closest = new RadixTrie<>();
+            for (String key : result) {
+                closest.put(key, key);
+            }
+            for (String key : base.suggestCommands(discriminator)) {
+                closest.put(key, key);
+            }
+            result = closest.closestKeys(discriminator, maxDistance, MAX_SUGGESTIONS);
+        }
+        return result;
+    }
+
+    public ShellCommand lookupCommand(String discriminator, List<Token> tokens) throws ShellException {
+        return lookupCommand(discriminator, tokens.size() - 1);
+    }
+
+    public ShellCommand lookupCommand(String discriminator, int argCount) throws ShellException {
+        CommandBucket bucket = bucket(discriminator);
+        if (bucket == null) {
+            throw ShellException.createCommandNotFound(discriminator, suggestCommands(discriminator));
+        }
+
+        // reduction
+        ShellCommand match = null;
+        int matchCount = 0;
+        if (argCount >= 0 && argCount < bucket.fixedArity.size()) {
+            List<ShellCommand> candidates = bucket.fixedArity.get(argCount);
+            if (!candidates.isEmpty()) {
+                match = candidates.get(0);
+                matchCount = candidates.size();
+            }
+        }
+        List<ShellCommand> varArgs = bucket.varArgs;
+        for (int i = 0; i < varArgs.size(); i++) {
+            ShellCommand candidate = varArgs.get(i);
+            if (candidate.getArity() <= argCount) {
+                match = candidate;
+                matchCount++;
+            }
+        }
+
+        // selection
+        if (matchCount == 0) {
+            throw ShellException.createCommandNotFoundForArgNum(discriminator, argCount);
+        } else if (matchCount > 1) {
+            throw ShellException.createAmbiguousCommandExc(discriminator, argCount);
+        } else {
+            return match;
+        }
+    }
+
+    // #################################################################################################################
+    private void registerCommands(Collection<CommandDefinition> definitions, Object handler, String prefix) {
+        int sizeBefore = commandTable.size();
+        try {
+            for (CommandDefinition definition : definitions) {
+                requireNonNull(definition, "NULL is not permitted as element of 'definitions' parameter.");
+                registerCommand(definition, handler, prefix);
+            }
+        } finally {
+            // the commands registered before a failing definition stay in the table
+            if (commandTable.size() != sizeBefore) {
+                version++;
+            }
+        }
+    }
+
+    private void registerCommand(CommandDefinition definition, Object handler, String prefix) {
+        if (frozen) {
+            throw new IllegalStateException("The command table is the base of another table and can not be changed.");
+        }
         String name;
         String autoAbbrev = null;
 
-        if (annotation != null && annotation.name() != null && !annotation.name().equals("")) {
-            name = annotation.name();
+        if (!definition.getName().isEmpty()) {
+            name = definition.getName();
         } else {
-            CommandNamer.NamingInfo autoNames = namer.nameCommand(method);
+            CommandNamer.NamingInfo autoNames = namer.nameCommand(definition.getMethod());
             name = autoNames.commandName;
             for (String abbr : autoNames.possibleAbbreviations) {
-                if (!doesCommandExist(prefix + abbr, method.getParameterTypes().length)) {
+                if (!doesCommandExist(prefix + abbr, definition.getArity())) {
                     autoAbbrev = abbr;
                     break;
                 }
             }
         }
 
-        ShellCommand command = new ShellCommand(handler, method, prefix, name);
+        ShellCommand command = new ShellCommand(handler, definition, prefix, name);
 
-        if (annotation != null && annotation.shortcut() != null && !annotation.shortcut().equals("")) {
-            command.setAbbreviation(annotation.shortcut());
+        if (!definition.getShortcut().isEmpty()) {
+            command.setAbbreviation(definition.getShortcut());
         } else {
             command.setAbbreviation(autoAbbrev);
         }
-        if (annotation != null && annotation.description() != null && !annotation.description().equals("")) {
-            command.setDescription(annotation.description());
+        if (!definition.getDescription().isEmpty()) {
+            command.setDescription(definition.getDescription());
         }
-        if (annotation != null && annotation.header() != null && !annotation.header().equals("")) {
-            command.setHeader(annotation.header());
+        if (!definition.getHeader().isEmpty()) {
+            command.setHeader(definition.getHeader());
         }
 
         commandTable.add(command);
+        indexCommand(command);
     }
 
+    /**
+     * Whether a command of the given arity can already be denoted by the given name. The index holds exactly the
+     * denotations {@link ShellCommand#canBeDenotedBy(String)} accepts, so this is the same as asking every command.
+     */
     private boolean doesCommandExist(String commandName, int arity) {
-        for (ShellCommand cmd : commandTable) {
-            if (cmd.canBeDenotedBy(commandName) && cmd.getArity() == arity) {
+        CommandBucket bucket = bucket(commandName);
+        if (bucket == null) {
+            return false;
+        }
+        for (ShellCommand cmd : bucket.commands) {
+            if (cmd.getArity() == arity) {
                 return true;
             }
         }
         return false;
     }
 
-    public List<ShellCommand> commandsByName(String discriminator) {
-        List<ShellCommand> collectedTable = new ArrayList<>();
-        // collection
-        for (ShellCommand cs : commandTable) {
-            if (cs.canBeDenotedBy(discriminator)) {
-                collectedTable.add(cs);
+    private boolean containsHandler(Object handler, String prefix) {
+        for (Map.Entry<String, Object> entry : handlers) {
+            if (entry.getValue() == handler && entry.getKey().equals(prefix)) {
+                return true;
             }
         }
-        return collectedTable;
+        return base != null && base.containsHandler(handler, prefix);
     }
 
-    public ShellCommand lookupCommand(String discriminator, List<Token> tokens) throws ShellException {
-        List<ShellCommand> collectedTable = commandsByName(discriminator);
-        // reduction
-        List<ShellCommand> reducedTable = new ArrayList<>();
-        for (ShellCommand cs : collectedTable) {
-            if (cs.getMethod().getParameterTypes().length == tokens.size() - 1
-                || (cs.getMethod().isVarArgs()
-                && (cs.getMethod().getParameterTypes().length <= tokens.size() - 1))) {
-                reducedTable.add(cs);
+    private CommandBucket bucket(String denotation) {
+        CommandBucket bucket = commandsByDenotation.get(denotation);
+        if (bucket == null && base != null) {
+            bucket = base.bucket(denotation);
+        }
+        return bucket;
+    }
+
+    /**
+     * Creates the bucket of a denotation in this table, starting with the commands the base table has for it.
+     */
+    private CommandBucket newBucket(String denotation) {
+        CommandBucket bucket = new CommandBucket();
+        CommandBucket inherited = base != null ? base.bucket(denotation) : null;
+        if (inherited != null) {
+            inherited.commands.forEach(bucket::add);
+        }
+        return bucket;
+    }
+
+    /**
+     * @return the denotations starting with the given prefix and their commands sorted by denotation, the commands
+     * of the base table first
+     */
+    private List<Map.Entry<String, ShellCommand>> denotationsWithPrefix(String prefix) {
+        List<Map.Entry<String, ShellCommand>> own = new ArrayList<>();
+        denotations.forEachWithPrefix(prefix, (key, command) -> own.add(new SimpleImmutableEntry<>(key, command)));
+        if (base == null) {
+            return own;
+        }
+        List<Map.Entry<String, ShellCommand>> inherited = base.denotationsWithPrefix(prefix);
+        List<Map.Entry<String, ShellCommand>> result = new ArrayList<>(inherited.size() + own.size());
+        int i = 0;
+        int j = 0;
+        while (i < inherited.size() || j < own.size()) {
+            if (j == own.size() || (i < inherited.size() && inherited.get(i).getKey().compareTo(own.get(j).getKey()) <= 0)) {
+                result.add(inherited.get(i++));
+            } else {
+                result.add(own.get(j++));
             }
         }
-        // selection
-        if (collectedTable.isEmpty()) {
-            throw ShellException.createCommandNotFound(discriminator);
-        } else if (reducedTable.isEmpty()) {
-            throw ShellException.createCommandNotFoundForArgNum(discriminator, tokens.size() - 1);
-        } else if (reducedTable.size() > 1) {
-            throw ShellException.createAmbiguousCommandExc(discriminator, tokens.size() - 1);
-        } else {
-            return reducedTable.get(0);
+        return result;
+    }
+
+    private void indexCommand(ShellCommand command) {
+        String fullName = command.getPrefix() + command.getName();
+        commandsByDenotation.computeIfAbsent(fullName, this::newBucket).add(command);
+        denotations.put(fullName, command);
+
+        if (command.getAbbreviation() != null) {
+            String fullAbbreviation = command.getPrefix() + command.getAbbreviation();
+            if (!fullAbbreviation.equals(fullName)) {
+                commandsByDenotation.computeIfAbsent(fullAbbreviation, this::newBucket).add(command);
+                denotations.put(fullAbbreviation, command);
+            }
+        }
+    }
+
+    /**
+     * All commands sharing one denotation, bucketed by arity so that a lookup only has to look at the
+     * candidates which can take the given number of arguments.
+     */
+    private static final class CommandBucket {
+        private final List<ShellCommand> commands = new ArrayList<>(1);
+        private final List<List<ShellCommand>> fixedArity = new ArrayList<>(1);
+        private final List<ShellCommand> varArgs = new ArrayList<>(0);
+
+        private void add(ShellCommand command) {
+            commands.add(command);
+            if (command.isVarArgs()) {
+                varArgs.add(command);
+            } else {
+                while (fixedArity.size() <= command.getArity()) {
+                    fixedArity.add(new ArrayList<>(1));
+                }
+                fixedArity.get(command.getArity()).add(command);
+            }
         }
     }
-}
\ No newline at end of file
+}
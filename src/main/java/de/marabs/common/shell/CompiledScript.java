@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.input.InputConversion;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.lang.reflect.Array;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Execution plan of a script created by the {@link ScriptCompiler}.
+ * Every non empty line of the script is a step holding the resolved command, its converted parameters and its
+ * formatted header, so running the plan costs only the invocations.
+ * <p>
+ * A plan is bound to the command table and input conversion of the shell it was compiled for. Steps are executed
+ * like a plain line again as soon as either of them changes, e.g. because a step registered a new handler.
+ *
+ * @author Martin Absmeier
+ */
+@Getter
+public class CompiledScript {
+
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final long checksum;
+    private final long lineCount;
+    private final List<Step> steps;
+    @Getter(AccessLevel.NONE)
+    private final CommandTable commandTable;
+    @Getter(AccessLevel.NONE)
+    private final int commandTableVersion;
+    @Getter(AccessLevel.NONE)
+    private final InputConversion inputConversion;
+    @Getter(AccessLevel.NONE)
+    private final int inputConversionVersion;
+
+    CompiledScript(Path path, long size, long lastModified, long checksum, long lineCount, List<Step> steps, Shell shell) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+        this.lineCount = lineCount;
+        this.steps = Collections.unmodifiableList(steps);
+        this.commandTable = shell.getCommandTable();
+        this.commandTableVersion = commandTable.getVersion();
+        this.inputConversion = shell.getInputConverter();
+        this.inputConversionVersion = inputConversion.getVersion();
+    }
+
+    /**
+     * Returns true if the resolved commands and converted parameters of the plan are still valid for the shell,
+     * i.e. neither its command table nor its input conversion changed since the plan was compiled.
+     *
+     * @param shell the shell to execute the plan
+     * @return true if the plan is up to date
+     */
+    public boolean isValidFor(Shell shell) {
+        return shell.getCommandTable() == commandTable && commandTable.getVersion() == commandTableVersion
+            && shell.getInputConverter() == inputConversion && inputConversion.getVersion() == inputConversionVersion;
+    }
+
+    boolean isCompiledFrom(long size, long lastModified, long checksum) {
+        return this.size == size && this.lastModified == lastModified && this.checksum == checksum;
+    }
+
+    @Override
+    public String toString() {
+        return path + ": " + steps.size() + " steps in " + lineCount + " lines";
+    }
+
+    /**
+     * A non empty line of the script.
+     */
+    @Getter
+    public static class Step {
+        private final long lineNumber;
+        private final String line;
+        /**
+         * The resolved command, null if the line could not be resolved. Such a step is executed like a plain line
+         * and reports its error then.
+         */
+        private final ShellCommand command;
+        @Getter(AccessLevel.NONE)
+        private final Object[] parameters;
+        private final String header;
+
+        Step(long lineNumber, String line, ShellCommand command, Object[] parameters, String header) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.command = command;
+            this.parameters = parameters;
+            this.header = header;
+        }
+
+        boolean isResolved() {
+            return command != null;
+        }
+
+        /**
+         * Returns a copy of the converted parameters, arrays (varargs) are copied too, so a command can not change
+         * the parameters of the next run.
+         */
+        Object[] copyParameters() {
+            Object[] copy = parameters.clone();
+            for (int i = 0; i < copy.length; i++) {
+                Object parameter = copy[i];
+                if (parameter != null && parameter.getClass().isArray()) {
+                    int length = Array.getLength(parameter);
+                    Object array = Array.newInstance(parameter.getClass().getComponentType(), length);
+                    System.arraycopy(parameter, 0, array, 0, length);
+                    copy[i] = array;
+                }
+            }
+            return copy;
+        }
+    }
+}
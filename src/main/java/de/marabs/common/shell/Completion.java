@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The candidates to complete the word at the cursor of a line with, see {@link Shell#complete(String, int)}.
+ *
+ * @author Martin Absmeier
+ */
+@Getter
+public class Completion {
+
+    private final String line;
+    private final int cursor;
+    /**
+     * Index in the line where the word to be replaced by a candidate starts
+     */
+    private final int start;
+    private final List<String> candidates;
+
+    public Completion(String line, int cursor, int start, List<String> candidates) {
+        this.line = line;
+        this.cursor = cursor;
+        this.start = start;
+        this.candidates = Collections.unmodifiableList(candidates);
+    }
+
+    /**
+     * @param candidate One of the candidates
+     * @return the line with the word at the cursor replaced by the candidate
+     */
+    public String apply(String candidate) {
+        return line.substring(0, start) + candidate + line.substring(cursor);
+    }
+
+    public boolean isEmpty() {
+        return candidates.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Completion at " + start + ": " + candidates;
+    }
+}
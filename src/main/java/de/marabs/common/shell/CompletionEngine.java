@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Completes partial command lines for the Shell.
+ * <p>
+ * The word at the cursor is found through the token spans of the line. The first word is completed with the names
+ * and abbreviations of the command table, which finds them in its prefix index. Other words are completed with the
+ * completers registered for the name or the type of the parameter at their position; booleans and enums are
+ * completed with their values if no completer is registered.
+ *
+ * @author Martin Absmeier
+ */
+class CompletionEngine {
+
+    private final Map<String, ParameterCompleter> completersByName = new HashMap<>();
+    private final Map<Class<?>, ParameterCompleter> completersByType = new HashMap<>();
+    private final TokenSpans tokens = new TokenSpans();
+
+    void addCompleter(String parameterName, ParameterCompleter completer) {
+        completersByName.put(requireNonNull(parameterName, "NULL is not permitted as value for parameterName."),
+                             requireNonNull(completer, "NULL is not permitted as value for completer."));
+    }
+
+    void addCompleter(Class<?> type, ParameterCompleter completer) {
+        completersByType.put(requireNonNull(type, "NULL is not permitted as value for type."),
+                             requireNonNull(completer, "NULL is not permitted as value for completer."));
+    }
+
+    Completion complete(CommandTable commandTable, String line, int cursor) {
+        requireNonNull(line, "NULL is not permitted as value for line.");
+        if (cursor < 0 || cursor > line.length()) {
+            throw new IllegalArgumentException("Cursor " + cursor + " is outside of the line");
+        }
+
+        String text = line.substring(0, cursor);
+        tokens.tokenize(text);
+        int wordIndex;
+        int start;
+        String partial;
+        if (!tokens.isEmpty() && tokens.getEnd(tokens.size() - 1) == cursor) {
+            wordIndex = tokens.size() - 1;
+            start = tokens.getStart(wordIndex);
+            partial = tokens.getString(wordIndex);
+        } else if (text.isEmpty() || Character.isWhitespace(text.charAt(cursor - 1))) {
+            wordIndex = tokens.size();
+            start = cursor;
+            partial = "";
+        } else {
+            // the cursor is in a comment
+            return new Completion(line, cursor, cursor, new ArrayList<>());
+        }
+
+        if (wordIndex == 0) {
+            return new Completion(line, cursor, start, commandTable.denotationsStartingWith(partial));
+        }
+
+        SortedSet<String> candidates = new TreeSet<>();
+        for (ShellCommand command : commandTable.commandsByName(tokens.getString(0))) {
+            ShellCommandParameter parameter = parameterAt(command, wordIndex - 1);
+            if (parameter != null) {
+                for (String candidate : completeParameter(parameter, partial)) {
+                    if (candidate.startsWith(partial)) {
+                        candidates.add(candidate);
+                    }
+                }
+            }
+        }
+        return new Completion(line, cursor, start, new ArrayList<>(candidates));
+    }
+
+    // #################################################################################################################
+    private static ShellCommandParameter parameterAt(ShellCommand command, int index) {
+        ShellCommandParameter[] parameters = command.getParamSpecs();
+        if (index < parameters.length && !(command.isVarArgs() && index == parameters.length - 1)) {
+            return parameters[index];
+        } else if (command.isVarArgs() && index >= parameters.length - 1) {
+            ShellCommandParameter varArgs = parameters[parameters.length - 1];
+            return new ShellCommandParameter(varArgs.getName(), varArgs.getValueClass().getComponentType(),
+                                             varArgs.getDescription(), varArgs.getPosition());
+        }
+        return null;
+    }
+
+    private Collection<String> completeParameter(ShellCommandParameter parameter, String partial) {
+        ParameterCompleter completer = completersByName.get(parameter.getName());
+        if (completer == null) {
+            completer = completersByType.get(parameter.getValueClass());
+        }
+        if (completer != null) {
+            return completer.complete(partial, parameter);
+        }
+
+        Class<?> type = parameter.getValueClass();
+        List<String> values = new ArrayList<>();
+        if (type == boolean.class || type == Boolean.class) {
+            values.add("false");
+            values.add("true");
+        } else if (type.isEnum()) {
+            for (Object constant : type.getEnumConstants()) {
+                values.add(((Enum<?>) constant).name());
+            }
+        }
+        return values;
+    }
+}
@@ -21,20 +21,37 @@ import de.marabs.common.shell.exception.ShellException;
 import de.marabs.common.shell.exception.TokenException;
 import de.marabs.common.shell.input.Input;
 import de.marabs.common.shell.input.InputType;
+import de.marabs.common.shell.logging.AsyncLogSink;
+import de.marabs.common.shell.logging.FileLogSink;
+import de.marabs.common.shell.logging.LogSink;
+import de.marabs.common.shell.logging.OverflowPolicy;
+import de.marabs.common.shell.logging.RollingFileLogSink;
 import de.marabs.common.shell.otput.Output;
 import de.marabs.common.shell.otput.OutputConversion;
 import de.marabs.common.shell.util.Strings;
 
 import java.io.*;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.stream.BaseStream;
 
 /**
  * Console IO subsystem.
  * This is also one of special command handlers and is responsible
  * for logging (duplicating output) and execution of scripts.
+ * <p>
+ * Output is rendered into buffers and written to the streams in large chunks: before the user is prompted for
+ * input, when the shell calls {@link #flush()} after a command and whenever a buffer is full. Only one of the out
+ * and err streams has buffered output at a time, so their output is not reordered.
  *
  * @author Martin Absmeier
  */
@@ -42,14 +59,22 @@ public class ConsoleIO implements Input, Output, ShellManageable {
 
     private static final String USER_PROMPT_SUFFIX = "> ";
     private static final String FILE_PROMPT_SUFFIX = "$ ";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int FLUSH_THRESHOLD = 8192;
+    private static final String TABS = "\t".repeat(32);
     private final BufferedReader in;
     private final PrintStream out;
     private final PrintStream err;
     private int lastCommandOffset = 0;
-    private PrintStream log = null;
+    private LogSink log = null;
     private int loopCounter = 0;
     private InputType inputState = InputType.USER;
     private BufferedReader scriptReader = null;
+    private final StringBuilder pending = new StringBuilder(FLUSH_THRESHOLD);
+    private PrintStream pendingStream = null;
+    private final StringBuilder pendingLog = new StringBuilder(FLUSH_THRESHOLD);
+    private int maxDepth = 0;
+    private int maxElements = 0;
 
     public ConsoleIO(BufferedReader in, PrintStream out, PrintStream err) {
         Console console = System.console();
@@ -105,17 +130,28 @@ public class ConsoleIO implements Input, Output, ShellManageable {
         }
 
         obj = oce.convertOutput(obj);
-        if (obj.getClass().isArray()) {
-            int length = Array.getLength(obj);
-            for (int i = 0; i < length; i++) {
-                output(Array.get(obj, i), 0, oce);
+        // local to the call, a converter or a lazy source may output through this instance while it is output
+        Deque<OutputFrame> frames = new ArrayDeque<>();
+        try {
+            if (!pushElements(frames, obj, 0, oce)) {
+                outputValue(frames, obj, 0, oce);
             }
-        } else if (obj instanceof Collection) {
-            for (Object elem : (Collection<?>) obj) {
-                output(elem, 0, oce);
+            while (!frames.isEmpty()) {
+                OutputFrame frame = frames.peek();
+                if (!frame.hasNext()) {
+                    frames.pop().close();
+                } else if (maxElements > 0 && frame.count == maxElements) {
+                    printIndent(frame.indent);
+                    println(frame.remaining());
+                    frames.pop().close();
+                } else {
+                    outputValue(frames, frame.next(), frame.indent, oce);
+                }
+            }
+        } finally {
+            while (!frames.isEmpty()) {
+                frames.pop().close();
             }
-        } else {
-            output(obj, 0, oce);
         }
     }
 
@@ -133,11 +169,23 @@ public class ConsoleIO implements Input, Output, ShellManageable {
 
     public void outputException(Throwable e) {
         printlnErr(e);
+        if (e instanceof ShellException && !((ShellException) e).getSuggestions().isEmpty()) {
+            printlnErr("Did you mean: " + String.join(", ", ((ShellException) e).getSuggestions()) + "?");
+        }
         if (e.getCause() != null) {
             printlnErr(e.getCause());
         }
     }
 
+    /**
+     * Writes the buffered output to the streams.
+     */
+    @Override
+    public void flush() {
+        flushPending();
+        flushLog();
+    }
+
     public void enterLoop() {
         if (isLoggingEnabled()) {
             loopCounter++;
@@ -151,35 +199,107 @@ public class ConsoleIO implements Input, Output, ShellManageable {
         if (loopCounter < 0) {
             disableLogging();
         }
+        flush();
+        if (log != null) {
+            log.flush();
+        }
     }
 
     @Command(description = "Sets up logging, which duplicates all subsequent output in a file")
     public void enableLogging(
-        @CommandParameter(name = "fileName", description = "Name of the logfile") String filename) throws FileNotFoundException {
-        log = new PrintStream(filename);
+        @CommandParameter(name = "fileName", description = "Name of the logfile") String filename) throws IOException {
+        enableLogging(filename, OverflowPolicy.BLOCK.name());
+    }
+
+    @Command(description = "Sets up logging, which duplicates all subsequent output in a file written in the background")
+    public void enableLogging(
+        @CommandParameter(name = "fileName", description = "Name of the logfile") String filename,
+        @CommandParameter(name = "overflow-policy", description = "What to do if the file can not keep up: block, drop or spill")
+        String overflowPolicy) throws IOException {
+        OverflowPolicy policy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase(Locale.ROOT));
+        enableLogging(AsyncLogSink.builder().delegate(new FileLogSink(Paths.get(filename))).overflowPolicy(policy).build());
+    }
+
+    @Command(description = "Sets up logging, which duplicates all subsequent output in a rotated file written in the background")
+    public void enableLogging(
+        @CommandParameter(name = "fileName", description = "Name of the logfile") String filename,
+        @CommandParameter(name = "overflow-policy", description = "What to do if the file can not keep up: block, drop or spill")
+        String overflowPolicy,
+        @CommandParameter(name = "rotation", description = "When to rotate the file, e.g. size=10MB,every=1d,keep=7,gzip=true")
+        String rotation) throws IOException {
+        OverflowPolicy policy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase(Locale.ROOT));
+        LogSink file = RollingFileLogSink.forSpecification(Paths.get(filename), rotation);
+        enableLogging(AsyncLogSink.builder().delegate(file).overflowPolicy(policy).build());
+    }
+
+    /**
+     * Sets up logging to the given sink, a previous log is completed and closed.
+     *
+     * @param sink the sink all subsequent output is duplicated to
+     */
+    public void enableLogging(LogSink sink) {
+        Objects.requireNonNull(sink, "NULL is not permitted as value for sink.");
+        if (log != null) {
+            flushLog();
+            log.close();
+        }
+        log = sink;
         loopCounter = 0;
     }
 
     @Command(description = "Turns off logging")
     public String disableLogging() {
         if (log != null) {
+            flushLog();
             log.close();
+            long droppedRecords = log.getDroppedRecords();
             log = null;
-            return "Logging disabled";
+            return droppedRecords == 0 ? "Logging disabled" : "Logging disabled, " + droppedRecords + " records dropped";
         } else {
             return "Logging is already disabled";
         }
     }
 
+    @Command(description = "Shows whether output is logged and how many log records were dropped")
+    public String loggingStatus() {
+        if (log == null) {
+            return "Logging is disabled";
+        }
+        return "Logging to " + log + ", " + log.getDroppedRecords() + " records dropped";
+    }
+
+    @Command(description = "Limits how much of nested results is output, 0 means unlimited")
+    public String setOutputLimits(
+        @CommandParameter(name = "max-depth", description = "Number of nesting levels output, deeper ones are summarized")
+        int maxDepth,
+        @CommandParameter(name = "max-elements", description = "Number of elements output per array, collection or stream")
+        int maxElements) {
+        if (maxDepth < 0 || maxElements < 0) {
+            throw new IllegalArgumentException("Output limits must not be negative.");
+        }
+        this.maxDepth = maxDepth;
+        this.maxElements = maxElements;
+        return "Output limited to " + describeLimit(maxDepth) + " levels and " + describeLimit(maxElements) + " elements";
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxElements() {
+        return maxElements;
+    }
+
     // #################################################################################################################
     private String readUsersCommand(String prompt) throws IOException {
         String completePrompt = prompt + USER_PROMPT_SUFFIX;
         print(completePrompt);
         lastCommandOffset = completePrompt.length();
+        flush();
 
         String command = in.readLine();
         if (log != null) {
-            log.println(command);
+            appendLog(String.valueOf(command), true);
         }
         return command;
     }
@@ -204,67 +324,330 @@ public class ConsoleIO implements Input, Output, ShellManageable {
     }
 
     private void print(Object x) {
-        out.print(x);
-        if (log != null) {
-            log.print(x);
-        }
+        write(out, String.valueOf(x), false);
     }
 
     private void println(Object x) {
-        out.println(x);
-        if (log != null) {
-            log.println(x);
-        }
+        write(out, String.valueOf(x), true);
     }
 
     private void printErr(Object x) {
-        err.print(x);
-        if (log != null) {
-            log.print(x);
-        }
+        write(err, String.valueOf(x), false);
     }
 
     private void printlnErr(Object x) {
-        err.println(x);
+        write(err, String.valueOf(x), true);
+    }
+
+    private void write(PrintStream stream, String text, boolean newLine) {
+        if (pendingStream != stream) {
+            flushPending();
+            pendingStream = stream;
+        }
+        pending.append(text);
+        if (newLine) {
+            pending.append(LINE_SEPARATOR);
+        }
+        if (pending.length() >= FLUSH_THRESHOLD) {
+            flushPending();
+        }
         if (log != null) {
-            log.println(x);
+            appendLog(text, newLine);
+        }
+    }
+
+    private void appendLog(String text, boolean newLine) {
+        pendingLog.append(text);
+        if (newLine) {
+            pendingLog.append(LINE_SEPARATOR);
+        }
+        if (pendingLog.length() >= FLUSH_THRESHOLD) {
+            flushLog();
+        }
+    }
+
+    private void flushPending() {
+        if (pending.length() > 0) {
+            pendingStream.print(pending);
+            pendingStream.flush();
+            pending.setLength(0);
+        }
+    }
+
+    private void flushLog() {
+        if (pendingLog.length() > 0) {
+            if (log != null) {
+                log.write(pendingLog.toString());
+            }
+            pendingLog.setLength(0);
         }
     }
 
-    private void output(Object obj, int indent, OutputConversion oce) {
+    /**
+     * Outputs one element, an array, collection, iterator, stream or iterable is labeled and its elements are pushed
+     * to be output one level deeper.
+     */
+    private void outputValue(Deque<OutputFrame> frames, Object obj, int indent, OutputConversion oce) {
         if (Objects.isNull(obj)) {
             return;
         }
 
         obj = oce.convertOutput(obj);
-        for (int i = 0; i < indent; i++) {
-            print("\t");
-        }
+        printIndent(indent);
 
         if (Objects.isNull(obj)) {
             println("(null)");
-        } else if (obj.getClass().isPrimitive() || obj instanceof String) {
+        } else if (obj instanceof String) {
+            println(obj);
+        } else if (obj instanceof Throwable && !(obj instanceof Collection)) {
+            println(obj); // class and its message
+            flushPending();
+            ((Throwable) obj).printStackTrace(out);
+        } else if (isContainer(obj)) {
+            String label = obj.getClass().isArray() ? "Array"
+                : obj instanceof Collection ? "Collection"
+                : obj instanceof Iterator ? "Iterator"
+                : obj instanceof BaseStream ? "Stream" : "Iterable";
+            if (maxDepth > 0 && indent + 1 >= maxDepth) {
+                println(label + elidedSummary(obj));
+                closeSource(obj);
+            } else {
+                println(label);
+                pushElements(frames, obj, indent + 1, oce);
+            }
+        } else {
             println(obj);
+        }
+    }
+
+    /**
+     * Pushes the elements of a container to be output at the given indent. Primitive arrays are output immediately
+     * if no converter applies to their boxed elements, which can not be containers themselves.
+     *
+     * @return false if obj is not a container
+     */
+    private boolean pushElements(Deque<OutputFrame> frames, Object obj, int indent, OutputConversion oce) {
+        if (obj instanceof Object[]) {
+            frames.push(new ArrayFrame((Object[]) obj, indent));
         } else if (obj.getClass().isArray()) {
-            println("Array");
-            int length = Array.getLength(obj);
-            for (int i = 0; i < length; i++) {
-                output(Array.get(obj, i), indent + 1, oce);
+            if (!oce.hasConvertersFor(MethodType.methodType(obj.getClass().getComponentType()).wrap().returnType())) {
+                outputPrimitiveArray(obj, indent);
+            } else {
+                frames.push(new PrimitiveArrayFrame(obj, indent));
             }
         } else if (obj instanceof Collection) {
-            println("Collection");
-            for (Object elem : (Collection<?>) obj) {
-                output(elem, indent + 1, oce);
+            Collection<?> collection = (Collection<?>) obj;
+            frames.push(new IteratorFrame(collection.iterator(), null, collection.size(), indent));
+        } else if (isIteratedLazily(obj)) {
+            frames.push(new IteratorFrame(iteratorOf(obj), obj, -1, indent));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void outputPrimitiveArray(Object array, int indent) {
+        int length = Array.getLength(array);
+        int shown = maxElements > 0 ? Math.min(length, maxElements) : length;
+        if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            for (int i = 0; i < shown; i++) {
+                printIndent(indent);
+                println(String.valueOf(values[i]));
+            }
+        } else if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            for (int i = 0; i < shown; i++) {
+                printIndent(indent);
+                println(String.valueOf(values[i]));
+            }
+        } else if (array instanceof double[]) {
+            double[] values = (double[]) array;
+            for (int i = 0; i < shown; i++) {
+                printIndent(indent);
+                println(String.valueOf(values[i]));
+            }
+        } else if (array instanceof byte[]) {
+            byte[] values = (byte[]) array;
+            for (int i = 0; i < shown; i++) {
+                printIndent(indent);
+                println(String.valueOf(values[i]));
             }
-        } else if (obj instanceof Throwable) {
-            println(obj); // class and its message
-            ((Throwable) obj).printStackTrace(out);
         } else {
-            println(obj);
+            for (int i = 0; i < shown; i++) {
+                printIndent(indent);
+                println(Array.get(array, i));
+            }
+        }
+        if (shown < length) {
+            printIndent(indent);
+            println("... " + (length - shown) + " more elements");
+        }
+    }
+
+    private void printIndent(int indent) {
+        if (indent > 0) {
+            print(indent <= TABS.length() ? TABS.substring(0, indent) : "\t".repeat(indent));
+        }
+    }
+
+    private static String describeLimit(int limit) {
+        return limit == 0 ? "unlimited" : String.valueOf(limit);
+    }
+
+    private static boolean isContainer(Object obj) {
+        return obj.getClass().isArray() || obj instanceof Collection || isIteratedLazily(obj);
+    }
+
+    /**
+     * Iterators, streams and iterables other than collections are output element by element as they are produced,
+     * without holding them in memory. A Path is an Iterable of its name elements, but is output as a whole, and so is
+     * a Throwable which iterates its causes, e.g. SQLException.
+     */
+    private static boolean isIteratedLazily(Object obj) {
+        return obj instanceof Iterator || obj instanceof BaseStream
+            || (obj instanceof Iterable && !(obj instanceof Path) && !(obj instanceof Throwable));
+    }
+
+    private static Iterator<?> iteratorOf(Object source) {
+        if (source instanceof Iterator) {
+            return (Iterator<?>) source;
+        } else if (source instanceof BaseStream) {
+            return ((BaseStream<?, ?>) source).iterator();
+        } else {
+            return ((Iterable<?>) source).iterator();
+        }
+    }
+
+    private static String elidedSummary(Object container) {
+        if (container.getClass().isArray()) {
+            return " (" + Array.getLength(container) + " elements not shown)";
+        } else if (container instanceof Collection) {
+            return " (" + ((Collection<?>) container).size() + " elements not shown)";
+        }
+        return " (elements not shown)";
+    }
+
+    /**
+     * Closes an iterator, stream or iterable after its elements were output, if it is closeable.
+     */
+    private static void closeSource(Object source) {
+        if (source instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) source).close();
+            } catch (Exception ex) {
+                throw new ShellException("Error closing " + source.getClass().getName(), ex);
+            }
         }
     }
 
     private boolean isLoggingEnabled() {
         return log != null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Elements of a container still to be output, the frames replace recursion so deeply nested results can not
+     * overflow the stack.
+     */
+    private abstract static class OutputFrame {
+        final int indent;
+        /**
+         * Number of elements returned by next
+         */
+        int count = 0;
+
+        OutputFrame(int indent) {
+            this.indent = indent;
+        }
+
+        abstract boolean hasNext();
+
+        abstract Object next();
+
+        abstract String remaining();
+
+        void close() {
+        }
+    }
+
+    private static final class ArrayFrame extends OutputFrame {
+        private final Object[] array;
+
+        ArrayFrame(Object[] array, int indent) {
+            super(indent);
+            this.array = array;
+        }
+
+        boolean hasNext() {
+            return count < array.length;
+        }
+
+        Object next() {
+            return array[count++];
+        }
+
+        String remaining() {
+            return "... " + (array.length - count) + " more elements";
+        }
+    }
+
+    private static final class PrimitiveArrayFrame extends OutputFrame {
+        private final Object array;
+        private final int length;
+
+        PrimitiveArrayFrame(Object array, int indent) {
+            super(indent);
+            this.array = array;
+            this.length = Array.getLength(array);
+        }
+
+        boolean hasNext() {
+            return count < length;
+        }
+
+        Object next() {
+            return Array.get(array, count++);
+        }
+
+        String remaining() {
+            return "... " + (length - count) + " more elements";
+        }
+    }
+
+    private static final class IteratorFrame extends OutputFrame {
+        private final Iterator<?> iterator;
+        private final Object source;
+        private final int size;
+
+        /**
+         * @param source closed when the frame is done, null if there is nothing to close
+         * @param size   number of elements or -1 if unknown
+         */
+        IteratorFrame(Iterator<?> iterator, Object source, int size, int indent) {
+            super(indent);
+            this.iterator = iterator;
+            this.source = source;
+            this.size = size;
+        }
+
+        boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        Object next() {
+            count++;
+            return iterator.next();
+        }
+
+        String remaining() {
+            return size < 0 ? "... more elements" : "... " + (size - count) + " more elements";
+        }
+
+        @Override
+        void close() {
+            if (source != null) {
+                closeSource(source);
+            }
+        }
+    }
+}
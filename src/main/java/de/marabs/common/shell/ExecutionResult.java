@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Result of a command line executed with {@link Shell#execute(String)}.
+ * Instead of being written to the shell's Output, the value returned by the command, its converted form, the header
+ * and the execution time are handed back to the caller.
+ *
+ * @author Martin Absmeier
+ */
+@Getter
+public class ExecutionResult {
+
+    /**
+     * The executed command line.
+     */
+    private final String line;
+    /**
+     * The invoked command, null if the line was empty or no command could be found.
+     */
+    private final ShellCommand command;
+    /**
+     * The converted parameters the command was invoked with, null if the line could not be converted.
+     */
+    private final Object[] parameters;
+    /**
+     * The formatted header of the command, null if the command has none.
+     */
+    private final String header;
+    /**
+     * The value returned by the command.
+     */
+    private final Object returnValue;
+    /**
+     * The return value after applying the shell's output converters.
+     */
+    private final Object output;
+    /**
+     * The time the command took in nanoseconds, not including lookup and conversion.
+     */
+    private final long durationNanos;
+    /**
+     * The exception thrown by the command or while looking it up, converting its parameters or its return value
+     * (e.g. ShellException or TokenException), null on success.
+     */
+    private final Throwable exception;
+
+    @Builder
+    public ExecutionResult(String line, ShellCommand command, Object[] parameters, String header, Object returnValue,
+                           Object output, long durationNanos, Throwable exception) {
+        this.line = line;
+        this.command = command;
+        this.parameters = parameters;
+        this.header = header;
+        this.returnValue = returnValue;
+        this.output = output;
+        this.durationNanos = durationNanos;
+        this.exception = exception;
+    }
+
+    /**
+     * Returns true if the line was executed without exception.
+     *
+     * @return true on success, false otherwise
+     */
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionResult{line=" + line + ", output=" + output + ", durationNanos=" + durationNanos +
+            ", exception=" + exception + "}";
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.exception.ShellException;
+import de.marabs.common.shell.input.InputConverter;
+import de.marabs.common.shell.otput.OutputConverter;
+import lombok.Getter;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Commands and declared converters of one handler class, determined once per class and shared by all handlers of
+ * the class, e.g. by the handlers of all subshells.
+ * <p>
+ * The commands are taken from the generated {@link CommandRegistry} of the class if there is one, otherwise from the
+ * public methods annotated with {@link Command}. Only the converters themselves are read from each handler, because
+ * they are values of its fields.
+ *
+ * @author Martin Absmeier
+ */
+final class HandlerMetadata {
+
+    private static final String INPUT_CONVERTERS_PREFIX = "CLI_INPUT_CONVERTERS";
+    private static final String OUTPUT_CONVERTERS_PREFIX = "CLI_OUTPUT_CONVERTERS";
+
+    private static final ClassValue<HandlerMetadata> METADATA = new ClassValue<HandlerMetadata>() {
+        @Override
+        protected HandlerMetadata computeValue(Class<?> handlerClass) {
+            return new HandlerMetadata(handlerClass);
+        }
+    };
+
+    private final CommandRegistry registry;
+    /**
+     * Definitions of all commands of the class in the order they are registered.
+     */
+    @Getter
+    private final List<CommandDefinition> commands;
+    private final List<Field> inputConverterFields;
+    private final List<Field> outputConverterFields;
+
+    /**
+     * Returns the metadata of the given handler class.
+     *
+     * @param handlerClass Class of the handler
+     * @return the metadata, which is computed on first use
+     */
+    static HandlerMetadata forClass(Class<?> handlerClass) {
+        return METADATA.get(handlerClass);
+    }
+
+    /**
+     * Returns the input converters declared by the given handler (fields named CLI_INPUT_CONVERTERS...).
+     *
+     * @param handler Handler of the class of this metadata
+     * @return declared input converters
+     */
+    List<InputConverter> getInputConverters(Object handler) {
+        if (registry != null) {
+            return registry.getInputConverters(handler);
+        }
+        return readConverters(inputConverterFields, handler, InputConverter.class);
+    }
+
+    /**
+     * Returns the output converters declared by the given handler (fields named CLI_OUTPUT_CONVERTERS...).
+     *
+     * @param handler Handler of the class of this metadata
+     * @return declared output converters
+     */
+    List<OutputConverter> getOutputConverters(Object handler) {
+        if (registry != null) {
+            return registry.getOutputConverters(handler);
+        }
+        return readConverters(outputConverterFields, handler, OutputConverter.class);
+    }
+
+    // #################################################################################################################
+    private HandlerMetadata(Class<?> handlerClass) {
+        registry = CommandRegistries.forClass(handlerClass);
+        if (registry != null) {
+            commands = Collections.unmodifiableList(new ArrayList<>(registry.getCommands()));
+            inputConverterFields = Collections.emptyList();
+            outputConverterFields = Collections.emptyList();
+            return;
+        }
+
+        List<CommandDefinition> definitions = new ArrayList<>();
+        for (Method method : handlerClass.getMethods()) {
+            if (method.getAnnotation(Command.class) != null) {
+                definitions.add(CommandDefinition.forMethod(method));
+            }
+        }
+        commands = Collections.unmodifiableList(definitions);
+        inputConverterFields = converterFields(handlerClass, INPUT_CONVERTERS_PREFIX, InputConverter.class);
+        outputConverterFields = converterFields(handlerClass, OUTPUT_CONVERTERS_PREFIX, OutputConverter.class);
+    }
+
+    private static List<Field> converterFields(Class<?> handlerClass, String prefix, Class<?> converterType) {
+        List<Field> result = new ArrayList<>(0);
+        for (Field field : handlerClass.getFields()) {
+            if (field.getName().startsWith(prefix)
+                && field.getType().isArray()
+                && converterType.isAssignableFrom(field.getType().getComponentType())) {
+                result.add(field);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static <T> List<T> readConverters(List<Field> fields, Object handler, Class<T> converterType) {
+        if (fields.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>();
+        for (Field field : fields) {
+            try {
+                Object convertersArray = field.get(handler);
+                for (int i = 0; i < Array.getLength(convertersArray); i++) {
+                    result.add(converterType.cast(Array.get(convertersArray, i)));
+                }
+            } catch (Exception ex) {
+                throw new ShellException("Error getting converter from field " + field.getName(), ex);
+            }
+        }
+        return result;
+    }
+}
@@ -19,11 +19,17 @@ import de.marabs.common.shell.annotation.Command;
 import de.marabs.common.shell.annotation.CommandParameter;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Help command handler (usually prefixed by '?').
@@ -33,7 +39,11 @@ import java.util.List;
 public class HelpCommandHandler implements ShellDependent {
 
     private static final String COMMAND_LIST_HEADER = "shortcut\tname\tparams";
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final int HTML_BUFFER_SIZE = 64 * 1024;
     private Shell owner;
+    private CommandSearchIndex searchIndex;
+    private HelpCache cache;
 
     public void cliSetShell(Shell theShell) {
         owner = theShell;
@@ -41,24 +51,30 @@ public class HelpCommandHandler implements ShellDependent {
 
     @Command(description = "List all commands", header = COMMAND_LIST_HEADER)
     public List<String> listAll() {
-        List<ShellCommand> commands = owner.getCommandTable().getCommandTable();
-        List<String> result = new ArrayList<>(commands.size());
-        for (ShellCommand command : commands) {
-            result.add(formatCommandShort(command));
+        HelpCache help = helpCache();
+        if (help.allLines == null) {
+            List<String> result = new ArrayList<>(help.table.getCommandTable().size());
+            for (ShellCommand command : help.table.getCommandTable()) {
+                result.add(help.shortLine(command));
+            }
+            help.allLines = Collections.unmodifiableList(result);
         }
-        return result;
+        return help.allLines;
     }
 
     @Command(description = "List all commands with no prefix", header = COMMAND_LIST_HEADER)
     public List<String> list() {
-        List<ShellCommand> commands = owner.getCommandTable().getCommandTable();
-        List<String> result = new ArrayList<>(commands.size());
-        for (ShellCommand command : commands) {
-            if (command.getPrefix() == null || command.getPrefix().isEmpty()) {
-                result.add(formatCommandShort(command));
+        HelpCache help = helpCache();
+        if (help.unprefixedLines == null) {
+            List<String> result = new ArrayList<>(help.table.getCommandTable().size());
+            for (ShellCommand command : help.table.getCommandTable()) {
+                if (command.getPrefix() == null || command.getPrefix().isEmpty()) {
+                    result.add(help.shortLine(command));
+                }
             }
+            help.unprefixedLines = Collections.unmodifiableList(result);
         }
-        return result;
+        return help.unprefixedLines;
     }
 
     @Command(description = "Generates an HTML file with command descriptions.\n" +
@@ -70,32 +86,31 @@ public class HelpCommandHandler implements ShellDependent {
             "(usually system or advanced functionality).")
         boolean includePrefixed) throws IOException {
 
-        final String HTML_FORMAT = "<html><head><title>Auto-generated command reference file</title></head>" +
+        final String HTML_HEADER_FORMAT = "<html><head><title>Auto-generated command reference file</title></head>" +
             "<body>\n" +
             "<h1>%1$s Command Reference</h1>\n" +
-            "<em>Auto-generated by the <a href=\"" + Shell.PROJECT_HOMEPAGE_URL + "\">Cliche Shell</a></em>\n" +
-            "%2$s</body></html>";
+            "<em>Auto-generated by the <a href=\"" + Shell.PROJECT_HOMEPAGE_URL + "\">Cliche Shell</a></em>\n";
+        final String HTML_FOOTER = "</body></html>";
 
         List<ShellCommand> commands = owner.getCommandTable().getCommandTable();
-        StringBuilder commandsHTML = new StringBuilder();
-        for (ShellCommand command : commands) {
-            if (command.getPrefix().equals("")) {
-                appendCommandHTML(commandsHTML, command);
-            }
-        }
-        if (includePrefixed) {
+        File file = new File(fileName);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        try (Writer w = Channels.newWriter(channel, Charset.defaultCharset().newEncoder(), HTML_BUFFER_SIZE)) {
+            w.write(String.format(HTML_HEADER_FORMAT, htmlEncode(owner.getAppName())));
             for (ShellCommand command : commands) {
-                if (!command.getPrefix().equals("")) {
-                    appendCommandHTML(commandsHTML, command);
+                if (command.getPrefix().equals("")) {
+                    writeCommandHTML(w, command);
                 }
             }
-        }
-
-        String html = String.format(HTML_FORMAT, htmlEncode(owner.getAppName()), commandsHTML);
-
-        File file = new File(fileName);
-        try (OutputStreamWriter w = new FileWriter(file)) {
-            w.write(html);
+            if (includePrefixed) {
+                for (ShellCommand command : commands) {
+                    if (!command.getPrefix().equals("")) {
+                        writeCommandHTML(w, command);
+                    }
+                }
+            }
+            w.write(HTML_FOOTER);
         }
         return String.format("Command table saved to %s", file.getAbsolutePath());
     }
@@ -104,12 +119,29 @@ public class HelpCommandHandler implements ShellDependent {
     public List<String> list(
         @CommandParameter(name = "startsWith", description = "Pattern to show commands starting with") String startsWith) {
 
-        List<ShellCommand> commands = owner.getCommandTable().getCommandTable();
+        HelpCache help = helpCache();
+        List<ShellCommand> commands = help.table.commandsStartingWith(startsWith);
         List<String> result = new ArrayList<>(commands.size());
         for (ShellCommand command : commands) {
-            if (command.startsWith(startsWith)) {
-                result.add(formatCommandShort(command));
-            }
+            result.add(help.shortLine(command));
+        }
+        return result;
+    }
+
+    @Command(description = "List the commands whose names, descriptions or parameters contain the given words, " +
+        "best matches first", header = COMMAND_LIST_HEADER)
+    public List<String> search(
+        @CommandParameter(name = "words", description = "Words to search for") String... words) {
+
+        CommandTable commandTable = owner.getCommandTable();
+        if (searchIndex == null || searchIndex.getCommandTable() != commandTable) {
+            searchIndex = new CommandSearchIndex(commandTable);
+        }
+        List<ShellCommand> commands = searchIndex.search(String.join(" ", words), MAX_SEARCH_RESULTS);
+        HelpCache help = helpCache();
+        List<String> result = new ArrayList<>(commands.size());
+        for (ShellCommand command : commands) {
+            result.add(help.shortLine(command));
         }
         return result;
     }
@@ -125,41 +157,53 @@ public class HelpCommandHandler implements ShellDependent {
     @Command(description = "Show detailed info on all commands with given name")
     public Object help(
         @CommandParameter(name = "command-name", description = "Command name you want help on") String commandName) {
-        List<ShellCommand> commands = owner.getCommandTable().commandsByName(commandName);
+        HelpCache help = helpCache();
+        List<ShellCommand> commands = help.table.commandsByName(commandName);
         StringBuilder result = new StringBuilder();
         for (ShellCommand command : commands) {
-            result.append(formatCommandLong(command));
+            result.append(help.longText(command));
             result.append("\n");
         }
         return result;
     }
 
     // ################################################################################################################
-    private static void appendCommandHTML(StringBuilder commandsHTML, ShellCommand command) {
+    /**
+     * Returns the cache of formatted help. The help of a command does not change when other commands are added, only
+     * the lists of all commands are formatted again.
+     */
+    private HelpCache helpCache() {
+        CommandTable table = owner.getCommandTable();
+        if (cache == null || cache.table != table) {
+            cache = new HelpCache(table);
+        } else if (cache.version != table.getVersion()) {
+            cache.version = table.getVersion();
+            cache.allLines = null;
+            cache.unprefixedLines = null;
+        }
+        return cache;
+    }
+
+    private static void writeCommandHTML(Writer w, ShellCommand command) throws IOException {
         final String COMMAND_FORMAT = "<h2>%2$s <small>%3$s</small></h2>\n" +
             "<p><strong>shortcut:</strong> <big>%1$s</big></p>\n" +
             "<p>%4$s</p>\n" +
             "<table>\n" +
-            "<tr><th>parameter</th><th>type</th><th>description</th></tr>\n" +
-            "%5$s" +
-            "</table>\n";
+            "<tr><th>parameter</th><th>type</th><th>description</th></tr>\n";
         final String PARAM_FORMAT = "<tr><td><strong>%1$s</strong></td><td>%2$s</td><td>%3$s</td></tr>\n";
 
-        StringBuilder paramsHTML = new StringBuilder();
-        ShellCommandParameter[] paramSpecs = command.getParamSpecs();
-        for (ShellCommandParameter ps : paramSpecs) {
-            paramsHTML.append(String.format(PARAM_FORMAT,
-                                            htmlEncode(ps.getName()),
-                                            htmlEncode(ps.getValueClass().getSimpleName()),
-                                            htmlEncode(ps.getDescription())));
+        w.write(String.format(COMMAND_FORMAT,
+                              htmlEncode(command.getPrefix() + command.getAbbreviation()),
+                              htmlEncode(command.getPrefix() + command.getName()),
+                              htmlEncode(formatCommandParamsShort(command)),
+                              htmlEncode(command.getDescription())));
+        for (ShellCommandParameter ps : command.getParamSpecs()) {
+            w.write(String.format(PARAM_FORMAT,
+                                  htmlEncode(ps.getName()),
+                                  htmlEncode(ps.getValueClass().getSimpleName()),
+                                  htmlEncode(ps.getDescription())));
         }
-
-        commandsHTML.append(String.format(COMMAND_FORMAT,
-                                          htmlEncode(command.getPrefix() + command.getAbbreviation()),
-                                          htmlEncode(command.getPrefix() + command.getName()),
-                                          htmlEncode(formatCommandParamsShort(command)),
-                                          htmlEncode(command.getDescription()),
-                                          paramsHTML));
+        w.write("</table>\n");
     }
 
     private static String htmlEncode(String s) {
@@ -190,7 +234,7 @@ public class HelpCommandHandler implements ShellDependent {
             result.append(paramSpec.getName());
             first = false;
         }
-        if (command.getMethod().isVarArgs()) {
+        if (command.isVarArgs()) {
             result.append("...");
         }
 
@@ -211,7 +255,7 @@ public class HelpCommandHandler implements ShellDependent {
             command.getDescription()));
         if (command.getArity() > 0) {
             sb.append(String.format("Number of parameters: %d %n", command.getArity()));
-            Class<?>[] paramTypes = command.getMethod().getParameterTypes();
+            Class<?>[] paramTypes = command.getParameterTypes();
             ShellCommandParameter[] paramSpecs = command.getParamSpecs();
             if (paramSpecs != null) {
                 for (int i = 0; i < paramTypes.length; i++) {
@@ -221,7 +265,7 @@ public class HelpCommandHandler implements ShellDependent {
                     }
                 }
             }
-            if (command.getMethod().isVarArgs()) {
+            if (command.isVarArgs()) {
                 sb.append("This command is varargs on its last parameter.\n");
             }
         } else {
@@ -229,4 +273,29 @@ public class HelpCommandHandler implements ShellDependent {
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Formatted help of the commands of a command table, the lists of all commands belong to one version of the table.
+     */
+    private static final class HelpCache {
+        private final CommandTable table;
+        private int version;
+        private final Map<ShellCommand, String> shortLines = new IdentityHashMap<>();
+        private final Map<ShellCommand, String> longTexts = new IdentityHashMap<>();
+        private List<String> allLines;
+        private List<String> unprefixedLines;
+
+        private HelpCache(CommandTable table) {
+            this.table = table;
+            this.version = table.getVersion();
+        }
+
+        private String shortLine(ShellCommand command) {
+            return shortLines.computeIfAbsent(command, HelpCommandHandler::formatCommandShort);
+        }
+
+        private String longText(ShellCommand command) {
+            return longTexts.computeIfAbsent(command, HelpCommandHandler::formatCommandLong);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * {@code MethodHandleInvoker} invokes a command method through a MethodHandle which is adapted once to the generic
+ * (handler, parameters) shape, so no access checks and no reflective argument handling are done per call.
+ * <p>
+ * Exceptions thrown by the command method itself are reported as InvocationTargetException, just like
+ * Method.invoke does, all other failures (e.g. wrong parameter types) are thrown as they are.
+ *
+ * @author Martin Absmeier
+ */
+final class MethodHandleInvoker implements CommandInvoker {
+
+    private static final MethodType INVOKER_TYPE = methodType(Object.class, Object.class, Object[].class);
+    private static final MethodHandle WRAP_TARGET_EXCEPTION;
+
+    static {
+        try {
+            WRAP_TARGET_EXCEPTION = MethodHandles.lookup().findStatic(MethodHandleInvoker.class, "wrapTargetException",
+                                                                       methodType(Object.class, Throwable.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private final MethodHandle target;
+
+    /**
+     * Binds the given method to an invoker.
+     * Falls back to Method.invoke if the method can not be bound to a MethodHandle.
+     *
+     * @param method Command method
+     * @return invoker of the method
+     */
+    static CommandInvoker bind(Method method) {
+        try {
+            return new MethodHandleInvoker(createTarget(method));
+        } catch (IllegalAccessException | RuntimeException ex) {
+            return method::invoke;
+        }
+    }
+
+    @Override
+    public Object invoke(Object handler, Object[] parameters) throws Exception {
+        try {
+            return (Object) target.invokeExact(handler, parameters);
+        } catch (Exception | Error ex) {
+            throw ex;
+        } catch (Throwable throwable) {
+            // exceptions of the command method are already wrapped by the target, this is just for completeness
+            throw new InvocationTargetException(throwable);
+        }
+    }
+
+    // #################################################################################################################
+    private MethodHandleInvoker(MethodHandle target) {
+        this.target = target;
+    }
+
+    private static MethodHandle createTarget(Method method) throws IllegalAccessException {
+        MethodHandle direct = MethodHandles.lookup().unreflect(method).asFixedArity();
+        MethodType directType = direct.type();
+
+        // only exceptions of the method itself are caught, failures of the adaptations below pass through
+        MethodHandle exceptionHandler = WRAP_TARGET_EXCEPTION.asType(methodType(directType.returnType(), Throwable.class));
+        exceptionHandler = MethodHandles.dropArguments(exceptionHandler, 1, directType.parameterList());
+        MethodHandle guarded = MethodHandles.catchException(direct, Throwable.class, exceptionHandler);
+
+        if (Modifier.isStatic(method.getModifiers())) {
+            guarded = MethodHandles.dropArguments(guarded, 0, Object.class);
+        }
+        return guarded.asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+    }
+
+    private static Object wrapTargetException(Throwable cause) throws InvocationTargetException {
+        throw new InvocationTargetException(cause);
+    }
+}
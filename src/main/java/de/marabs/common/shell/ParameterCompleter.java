@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import java.util.Collection;
+
+/**
+ * Completes the values of command parameters, registered with the Shell for a parameter type or for the name of a
+ * parameter given by its CommandParameter annotation.
+ *
+ * @author Martin Absmeier
+ * @see Shell#addParameterCompleter(Class, ParameterCompleter)
+ * @see Shell#addParameterCompleter(String, ParameterCompleter)
+ */
+@FunctionalInterface
+public interface ParameterCompleter {
+
+    /**
+     * Returns the values the parameter could have. Values not starting with the partial value are ignored,
+     * so a completer may return all values it knows of.
+     *
+     * @param partial   What the user typed of the value so far, may be empty
+     * @param parameter The parameter to complete
+     * @return the candidate values, never null
+     */
+    Collection<String> complete(String partial, ShellCommandParameter parameter);
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Compiles scripts to {@link CompiledScript execution plans}: every line is tokenized, its command resolved and its
+ * parameters converted once, so a plan can be replayed any number of times.
+ * <p>
+ * Plans are cached by path, size, modification time and checksum of the script and are compiled again when the
+ * script or the command table or input conversion of the shell changed. If a cache directory is given, the tokenized
+ * script is also stored on disk, so a new process does not have to decode and tokenize it again. Commands and
+ * converted parameters are bound to the handler objects of the running shell and therefore are always resolved
+ * in memory.
+ *
+ * @author Martin Absmeier
+ */
+@Getter
+public class ScriptCompiler {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int DEFAULT_MAX_CACHED_SCRIPTS = 16;
+    private static final int CACHE_FILE_MAGIC = 0x53485343;
+    private static final int CACHE_FILE_FORMAT = 1;
+    private static final String CACHE_FILE_SUFFIX = ".tokens";
+
+    private final Shell shell;
+    private final Path cacheDirectory;
+    private final Charset charset;
+    private final int maxCachedScripts;
+    @Getter(AccessLevel.NONE)
+    private final Map<Path, CompiledScript> compiledScripts;
+
+    /**
+     * Creates a compiler for scripts executed on the given shell.
+     *
+     * @param shell            the shell executing the scripts
+     * @param cacheDirectory   directory for tokenized scripts, null to cache in memory only
+     * @param charset          the charset of the script files, null for the default charset
+     * @param maxCachedScripts how many plans are kept in memory, 0 for the default of 16
+     */
+    @Builder
+    public ScriptCompiler(Shell shell, Path cacheDirectory, Charset charset, int maxCachedScripts) {
+        this.shell = Objects.requireNonNull(shell, "NULL is not permitted as value for shell.");
+        this.cacheDirectory = cacheDirectory;
+        this.charset = charset != null ? charset : Charset.defaultCharset();
+        this.maxCachedScripts = maxCachedScripts > 0 ? maxCachedScripts : DEFAULT_MAX_CACHED_SCRIPTS;
+        this.compiledScripts = new LinkedHashMap<Path, CompiledScript>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CompiledScript> eldest) {
+                return size() > ScriptCompiler.this.maxCachedScripts;
+            }
+        };
+    }
+
+    /**
+     * Returns the plan of the script, from the cache if the script did not change since it was compiled.
+     *
+     * @param script the script file
+     * @return the plan of the script
+     * @throws IOException if the script can not be read or the cache file can not be written
+     */
+    public CompiledScript compile(Path script) throws IOException {
+        Path path = script.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long checksum = checksum(path);
+
+        CompiledScript compiled = compiledScripts.get(path);
+        if (compiled != null && compiled.isCompiledFrom(size, lastModified, checksum) && compiled.isValidFor(shell)) {
+            return compiled;
+        }
+
+        compiled = cacheDirectory != null ? readCacheFile(path, size, lastModified, checksum) : null;
+        if (compiled == null) {
+            compiled = compileFile(path, size, lastModified, checksum);
+            if (cacheDirectory != null) {
+                writeCacheFile(compiled);
+            }
+        }
+        compiledScripts.put(path, compiled);
+        return compiled;
+    }
+
+    /**
+     * Removes the plan of the script from the memory cache.
+     *
+     * @param script the script file
+     */
+    public void invalidate(Path script) {
+        compiledScripts.remove(script.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Removes all plans from the memory cache.
+     */
+    public void clear() {
+        compiledScripts.clear();
+    }
+
+    // #################################################################################################################
+    private CompiledScript compileFile(Path path, long size, long lastModified, long checksum) throws IOException {
+        List<CompiledScript.Step> steps = new ArrayList<>();
+        TokenSpans tokens = new TokenSpans();
+        long lineNumber = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), charset.newDecoder()), BUFFER_SIZE)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!tokens.tokenize(line).isEmpty()) {
+                    steps.add(compileStep(lineNumber, tokens));
+                }
+            }
+        }
+        return new CompiledScript(path, size, lastModified, checksum, lineNumber, steps, shell);
+    }
+
+    private CompiledScript.Step compileStep(long lineNumber, TokenSpans tokens) {
+        String line = tokens.getLine();
+        try {
+            ShellCommand command = shell.getCommandTable().lookupCommand(tokens.getString(0), tokens.size() - 1);
+            Object[] parameters = command.bindArguments(tokens, shell.getInputConverter());
+            return new CompiledScript.Step(lineNumber, line, command, parameters, Shell.formatHeader(command.getHeader(), parameters));
+        } catch (RuntimeException ex) {
+            // a ShellException, the exception of an input converter or a header not fitting the parameters:
+            // executed as plain line, which reports the error or finds a command registered by a previous step
+            return new CompiledScript.Step(lineNumber, line, null, null, null);
+        }
+    }
+
+    private long checksum(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private Path cacheFile(Path path) {
+        return cacheDirectory.resolve(Integer.toHexString(path.toString().hashCode()) + "-" + path.getFileName() + CACHE_FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the tokenized script from the cache directory, null if there is none or it belongs to another version
+     * of the script. A damaged cache file is ignored and written again, every length and count read from it has to fit
+     * into the file.
+     */
+    private CompiledScript readCacheFile(Path path, long size, long lastModified, long checksum) {
+        Path file = cacheFile(path);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            long fileSize = Files.size(file);
+            if (in.readInt() != CACHE_FILE_MAGIC || in.readInt() != CACHE_FILE_FORMAT || !in.readUTF().equals(path.toString())
+                || in.readLong() != size || in.readLong() != lastModified || in.readLong() != checksum) {
+                return null;
+            }
+            long lineCount = in.readLong();
+            int stepCount = readCount(in, fileSize, Long.BYTES + 2 * Integer.BYTES);
+            List<CompiledScript.Step> steps = new ArrayList<>(stepCount);
+            TokenSpans tokens = new TokenSpans();
+            int[] spans = new int[48];
+            for (int i = 0; i < stepCount; i++) {
+                long lineNumber = in.readLong();
+                byte[] bytes = new byte[readCount(in, fileSize, 1)];
+                in.readFully(bytes);
+                int tokenCount = readCount(in, fileSize, 3 * Integer.BYTES);
+                if (spans.length < tokenCount * 3) {
+                    spans = new int[tokenCount * 3];
+                }
+                for (int j = 0; j < tokenCount * 3; j++) {
+                    spans[j] = in.readInt();
+                }
+                tokens.restore(new String(bytes, StandardCharsets.UTF_8), spans, tokenCount);
+                steps.add(compileStep(lineNumber, tokens));
+            }
+            return new CompiledScript(path, size, lastModified, checksum, lineCount, steps, shell);
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a length or count of the cache file, whose items of the given size have to fit into the file.
+     */
+    private static int readCount(DataInputStream in, long fileSize, int itemSize) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || (long) count * itemSize > fileSize) {
+            throw new IOException("Damaged cache file, count " + count + " does not fit into " + fileSize + " bytes");
+        }
+        return count;
+    }
+
+    private void writeCacheFile(CompiledScript compiled) throws IOException {
+        Files.createDirectories(cacheDirectory);
+        Path file = cacheFile(compiled.getPath());
+        Path tempFile = Files.createTempFile(cacheDirectory, null, CACHE_FILE_SUFFIX);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+                out.writeInt(CACHE_FILE_MAGIC);
+                out.writeInt(CACHE_FILE_FORMAT);
+                out.writeUTF(compiled.getPath().toString());
+                out.writeLong(compiled.getSize());
+                out.writeLong(compiled.getLastModified());
+                out.writeLong(compiled.getChecksum());
+                out.writeLong(compiled.getLineCount());
+                out.writeInt(compiled.getSteps().size());
+                TokenSpans tokens = new TokenSpans();
+                for (CompiledScript.Step step : compiled.getSteps()) {
+                    byte[] bytes = step.getLine().getBytes(StandardCharsets.UTF_8);
+                    tokens.tokenize(step.getLine());
+                    out.writeLong(step.getLineNumber());
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    out.writeInt(tokens.size());
+                    for (int i = 0; i < tokens.size(); i++) {
+                        out.writeInt(tokens.getStart(i));
+                        out.writeInt(tokens.getEnd(i));
+                        out.writeInt(tokens.isQuoted(i) ? 1 : 0);
+                    }
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
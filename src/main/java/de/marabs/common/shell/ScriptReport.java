@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summary of a script run by the {@link ScriptRunner}.
+ * All errors are counted, but only the first ones are kept with their line.
+ *
+ * @author Martin Absmeier
+ */
+@Getter
+public class ScriptReport {
+
+    private final int maxRecordedErrors;
+    private long linesRead = 0;
+    private long commandsExecuted = 0;
+    private long errorCount = 0;
+    private final List<ScriptError> errors = new ArrayList<>();
+    private boolean aborted = false;
+    private long durationNanos = 0;
+
+    ScriptReport(int maxRecordedErrors) {
+        this.maxRecordedErrors = maxRecordedErrors;
+    }
+
+    /**
+     * Returns the recorded errors, at most maxRecordedErrors.
+     *
+     * @return the recorded errors in the order they occurred
+     */
+    public List<ScriptError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public boolean isSuccess() {
+        return errorCount == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(linesRead).append(" lines, ")
+            .append(commandsExecuted).append(" commands, ")
+            .append(errorCount).append(" errors in ")
+            .append(TimeUnit.NANOSECONDS.toMillis(durationNanos)).append(" ms");
+        if (aborted) {
+            builder.append(", aborted");
+        }
+        for (ScriptError error : errors) {
+            builder.append('\n').append(error);
+        }
+        if (errorCount > errors.size()) {
+            builder.append("\n... ").append(errorCount - errors.size()).append(" more errors");
+        }
+        return builder.toString();
+    }
+
+    // #################################################################################################################
+    void lineRead(long lineNumber) {
+        linesRead = lineNumber;
+    }
+
+    void commandExecuted() {
+        commandsExecuted++;
+    }
+
+    void error(String line, Throwable exception) {
+        errorCount++;
+        if (errors.size() < maxRecordedErrors) {
+            errors.add(new ScriptError(linesRead, line, exception));
+        }
+    }
+
+    void abort() {
+        aborted = true;
+    }
+
+    void finish(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * A failed line of a script.
+     */
+    @Getter
+    public static class ScriptError {
+        private final long lineNumber;
+        private final String line;
+        private final Throwable exception;
+
+        ScriptError(long lineNumber, String line, Throwable exception) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.exception = exception;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + line + " -> " + exception;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.exception.TokenException;
+import de.marabs.common.shell.otput.Output;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Runs script files without the overhead of the interactive command loop.
+ * The file is read through a large channel buffer, no prompt is rendered and the results of the commands are written
+ * to an Output (by default the Output of the shell). Failing lines either stop the script or are recorded in the
+ * report and skipped, depending on the {@link ErrorPolicy}.
+ * <p>
+ * With a {@link ScriptCompiler} scripts are run from their cached execution plan instead of line by line.
+ *
+ * @author Martin Absmeier
+ */
+@Getter
+public class ScriptRunner {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int DEFAULT_MAX_RECORDED_ERRORS = 100;
+    private static final String TOKEN_ERROR_FORMAT = "Line %d, column %d (%s): %s";
+
+    /**
+     * What to do when a line of the script fails.
+     */
+    public enum ErrorPolicy {
+        /**
+         * Stop the script at the first failing line.
+         */
+        FAIL_FAST,
+        /**
+         * Report the failing line and continue with the next one.
+         */
+        CONTINUE
+    }
+
+    private final Shell shell;
+    private final Output output;
+    private final ErrorPolicy errorPolicy;
+    private final Charset charset;
+    private final int maxRecordedErrors;
+    private final ScriptCompiler compiler;
+
+    /**
+     * Creates a runner executing the scripts on the given shell.
+     *
+     * @param shell             the shell executing the commands
+     * @param output            where results and errors are written to, null for the Output of the shell
+     * @param errorPolicy       what to do if a line fails, null for CONTINUE
+     * @param charset           the charset of the script files, null for the default charset
+     * @param maxRecordedErrors how many errors are kept in the report, 0 for the default of 100
+     * @param compiler          compiles and caches the scripts, null to run them line by line
+     */
+    @Builder
+    public ScriptRunner(Shell shell, Output output, ErrorPolicy errorPolicy, Charset charset, int maxRecordedErrors,
+                        ScriptCompiler compiler) {
+        this.shell = Objects.requireNonNull(shell, "NULL is not permitted as value for shell.");
+        this.output = output != null ? output : shell.getOutput();
+        this.errorPolicy = errorPolicy != null ? errorPolicy : ErrorPolicy.CONTINUE;
+        this.charset = charset != null ? charset : Charset.defaultCharset();
+        this.maxRecordedErrors = maxRecordedErrors > 0 ? maxRecordedErrors : DEFAULT_MAX_RECORDED_ERRORS;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Runs the script file line by line.
+     *
+     * @param script the script file
+     * @return the report of the run
+     * @throws IOException if the script can not be read
+     */
+    public ScriptReport run(Path script) throws IOException {
+        if (compiler != null) {
+            return run(compiler.compile(script));
+        }
+        try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(Channels.newReader(channel, charset.newDecoder(), BUFFER_SIZE), BUFFER_SIZE)) {
+            return run(reader);
+        }
+    }
+
+    /**
+     * Runs the script read from the reader line by line.
+     *
+     * @param reader the script
+     * @return the report of the run
+     * @throws IOException if the script can not be read
+     */
+    public ScriptReport run(BufferedReader reader) throws IOException {
+        ScriptReport report = new ScriptReport(maxRecordedErrors);
+        long timeBefore = System.nanoTime();
+
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            report.lineRead(++lineNumber);
+            if (!handleResult(shell.execute(line, false), lineNumber, report)) {
+                break;
+            }
+        }
+
+        output.flush();
+        report.finish(System.nanoTime() - timeBefore);
+        return report;
+    }
+
+    /**
+     * Runs the steps of a compiled script.
+     *
+     * @param script the plan of the script
+     * @return the report of the run
+     */
+    public ScriptReport run(CompiledScript script) {
+        ScriptReport report = new ScriptReport(maxRecordedErrors);
+        long timeBefore = System.nanoTime();
+
+        boolean completed = true;
+        for (CompiledScript.Step step : script.getSteps()) {
+            report.lineRead(step.getLineNumber());
+            if (!handleResult(shell.execute(script, step, false), step.getLineNumber(), report)) {
+                completed = false;
+                break;
+            }
+        }
+        if (completed) {
+            report.lineRead(script.getLineCount());
+        }
+
+        output.flush();
+        report.finish(System.nanoTime() - timeBefore);
+        return report;
+    }
+
+    // #################################################################################################################
+
+    /**
+     * Writes the result to the output and records it in the report.
+     *
+     * @return false if the script has to be stopped
+     */
+    private boolean handleResult(ExecutionResult result, long lineNumber, ScriptReport report) {
+        if (result.getCommand() != null) {
+            report.commandExecuted();
+        }
+        if (result.isSuccess()) {
+            output.outputHeader(result.getHeader());
+            if (result.getReturnValue() != null) {
+                output.output(result.getReturnValue(), shell.getOutputConverter());
+            }
+            return true;
+        }
+
+        report.error(result.getLine(), result.getException());
+        if (result.getException() instanceof TokenException) {
+            // the script line is not shown like an interactive command, so the token is located by line and column
+            TokenException error = (TokenException) result.getException();
+            Token token = error.getToken();
+            output.outputException(new TokenException(token, String.format(TOKEN_ERROR_FORMAT, lineNumber, token.getIndex() + 1,
+                                                                           token.getString(), error.getMessage())));
+        } else {
+            output.outputException(result.getException());
+        }
+        if (errorPolicy == ErrorPolicy.FAIL_FAST) {
+            report.abort();
+            return false;
+        }
+        return true;
+    }
+}
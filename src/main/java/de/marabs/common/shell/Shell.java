@@ -23,12 +23,18 @@ import de.marabs.common.shell.input.Input;
 import de.marabs.common.shell.input.InputConversion;
 import de.marabs.common.shell.otput.Output;
 import de.marabs.common.shell.otput.OutputConversion;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Shell is the class interacting with user.
@@ -55,6 +61,64 @@ public class Shell {
     private Throwable lastException = null;
     private List<String> path;
     private boolean displayTime = false;
+    @Getter(AccessLevel.NONE)
+    private final TokenSpans lineTokens = new TokenSpans();
+    @Getter(AccessLevel.NONE)
+    private final LastLookup lastLookup = new LastLookup();
+    private ScriptCompiler scriptCompiler;
+    @Getter(AccessLevel.NONE)
+    private final CompletionEngine completionEngine = new CompletionEngine();
+    /**
+     * Table of the commands of the aux handlers of the last subshell, shared by the subshells with the same aux handlers.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CommandTable subshellBase;
+
+    /**
+     * Returns the compiler caching the plans of scripts run with !run-compiled, it is created on first use.
+     *
+     * @return the script compiler of this shell
+     */
+    public ScriptCompiler getScriptCompiler() {
+        if (scriptCompiler == null) {
+            scriptCompiler = ScriptCompiler.builder().shell(this).build();
+        }
+        return scriptCompiler;
+    }
+
+    /**
+     * Completes the word at the cursor of a partial command line: a command name or abbreviation for the first word,
+     * a parameter value for the others.
+     *
+     * @param line   The line typed so far
+     * @param cursor Position of the cursor in the line
+     * @return the candidates in sorted order, with the position of the word they replace
+     */
+    public Completion complete(String line, int cursor) {
+        return completionEngine.complete(commandTable, line, cursor);
+    }
+
+    /**
+     * Registers a completer for the values of all parameters of the given type.
+     *
+     * @param type      Type of the parameters
+     * @param completer The completer
+     */
+    public void addParameterCompleter(Class<?> type, ParameterCompleter completer) {
+        completionEngine.addCompleter(type, completer);
+    }
+
+    /**
+     * Registers a completer for the values of all parameters with the given name, see {@link CommandParameter#name()}.
+     * It takes precedence over a completer registered for the type of the parameter.
+     *
+     * @param parameterName Name of the parameters
+     * @param completer     The completer
+     */
+    public void addParameterCompleter(String parameterName, ParameterCompleter completer) {
+        completionEngine.addCompleter(parameterName, completer);
+    }
 
     public ShellConfig getShellConfig() {
         return ShellConfig.builder().input(input).output(output).auxHandlers(auxHandlers).displayTime(displayTime).build();
@@ -103,10 +167,9 @@ public class Shell {
 
         allHandlers.add(handler);
         addDeclaredMethods(handler, prefix);
-        inputConverter.addDeclaredConverters(handler);
-        outputConverter.addDeclaredConverters(handler);
+        addDeclaredConverters(handler);
 
-        if (handler.getClass().isAssignableFrom(ShellDependent.class)) {
+        if (handler instanceof ShellDependent) {
             ((ShellDependent) handler).cliSetShell(this);
         }
     }
@@ -127,21 +190,40 @@ public class Shell {
         allHandlers.add(handler);
 
         addDeclaredMethods(handler, prefix);
-        inputConverter.addDeclaredConverters(handler);
-        outputConverter.addDeclaredConverters(handler);
+        addDeclaredConverters(handler);
 
         if (handler instanceof ShellDependent) {
             ((ShellDependent) handler).cliSetShell(this);
         }
     }
 
-    private void addDeclaredMethods(Object handler, String prefix) throws SecurityException {
-        for (Method m : handler.getClass().getMethods()) {
-            Command annotation = m.getAnnotation(Command.class);
-            if (annotation != null) {
-                commandTable.addMethod(m, handler, prefix);
+    /**
+     * Creates the command table of a subshell. The commands of its aux handlers are registered once and shared by all
+     * subshells with the same aux handlers, the subshell only adds its own commands.
+     *
+     * @param subshellAuxHandlers Aux handlers of the subshell by prefix, in the order the subshell adds them
+     * @return the empty command table of the subshell
+     */
+    CommandTable createSubshellCommandTable(Map<String, Object> subshellAuxHandlers) {
+        CommandTable base = commandTable.getBase();
+        if (base == null || !base.consistsOf(subshellAuxHandlers)) {
+            if (subshellBase == null || subshellBase.getNamer() != commandTable.getNamer()
+                || !subshellBase.consistsOf(subshellAuxHandlers)) {
+                subshellBase = CommandTable.ofHandlers(commandTable.getNamer(), subshellAuxHandlers);
             }
+            base = subshellBase;
         }
+        return new CommandTable(base);
+    }
+
+    private void addDeclaredMethods(Object handler, String prefix) throws SecurityException {
+        commandTable.addHandler(handler, prefix);
+    }
+
+    private void addDeclaredConverters(Object handler) {
+        HandlerMetadata metadata = HandlerMetadata.forClass(handler.getClass());
+        metadata.getInputConverters(handler).forEach(inputConverter::addConverter);
+        metadata.getOutputConverters(handler).forEach(outputConverter::addConverter);
     }
 
     /**
@@ -171,6 +253,8 @@ public class Shell {
                 if (!command.trim().equals("exit")) {
                     output.outputException(clie);
                 }
+            } finally {
+                output.flush();
             }
         }
         for (Object handler : allHandlers) {
@@ -181,61 +265,208 @@ public class Shell {
     }
 
     private void outputHeader(String header, Object[] parameters) {
+        output.outputHeader(formatHeader(header, parameters));
+    }
+
+    static String formatHeader(String header, Object[] parameters) {
         if (header == null || header.isEmpty()) {
-            output.outputHeader(null);
-        } else {
-            output.outputHeader(String.format(header, parameters));
+            return null;
         }
+        return String.format(header, parameters);
     }
 
     /**
      * You can operate Shell linewise, without entering the command loop.
-     * All output is directed to shell's Output.
+     * All output is directed to shell's Output, which is flushed when the command is completed.
      *
      * @param line Full command line
      * @throws ShellException This may be TokenException
      * @see Output
      */
     public void processLine(String line) throws ShellException {
-        if (line.trim().equals("?")) {
-            output.output(String.format(HINT_FORMAT, appName), outputConverter);
-        } else {
-            List<Token> tokens = Token.tokenize(line);
-            if (!tokens.isEmpty()) {
-                String discriminator = tokens.get(0).getString();
-                processCommand(discriminator, tokens);
+        try {
+            if (line.trim().equals("?")) {
+                output.output(String.format(HINT_FORMAT, appName), outputConverter);
+            } else {
+                TokenSpans tokens = lineTokens.tokenize(line);
+                if (!tokens.isEmpty()) {
+                    String discriminator = tokens.getString(0);
+                    processCommand(discriminator, tokens);
+                }
             }
+        } finally {
+            output.flush();
         }
     }
 
-    private void processCommand(String discriminator, List<Token> tokens) throws ShellException {
+    private void processCommand(String discriminator, TokenSpans tokens) throws ShellException {
         assert discriminator != null;
         assert !discriminator.equals("");
 
-        ShellCommand commandToInvoke = commandTable.lookupCommand(discriminator, tokens);
+        ShellCommand commandToInvoke = lookupCommand(discriminator, tokens.size() - 1);
 
-        Class<?>[] paramClasses = commandToInvoke.getMethod().getParameterTypes();
-        Object[] parameters = inputConverter.convertToParameters(tokens, paramClasses,
-                                                                 commandToInvoke.getMethod().isVarArgs());
+        Object[] parameters = commandToInvoke.bindArguments(tokens, inputConverter);
 
         outputHeader(commandToInvoke.getHeader(), parameters);
+        // the command may write to System.out itself, which must not overtake its header and the output before
+        output.flush();
 
-        long timeBefore = Calendar.getInstance().getTimeInMillis();
+        long timeBefore = System.nanoTime();
         Object invocationResult = commandToInvoke.invoke(parameters);
-        long timeAfter = Calendar.getInstance().getTimeInMillis();
+        long timeAfter = System.nanoTime();
 
         if (invocationResult != null) {
             output.output(invocationResult, outputConverter);
         }
         if (displayTime) {
-            final long time = timeAfter - timeBefore;
+            final long time = TimeUnit.NANOSECONDS.toMillis(timeAfter - timeBefore);
             if (time != 0L) {
                 output.output(String.format(TIME_MS_FORMAT_STRING, time), outputConverter);
             }
         }
     }
 
+    /**
+     * Executes a command line and returns its result instead of writing it to the shell's Output.
+     * Nothing is written to the Output except what the command writes itself, and exceptions are not thrown but
+     * returned as part of the result.
+     *
+     * @param line Full command line
+     * @return the result of the command
+     */
+    public ExecutionResult execute(String line) {
+        return execute(line, true);
+    }
+
+    /**
+     * Executes a command line, see {@link #execute(String)}.
+     *
+     * @param line          Full command line
+     * @param convertOutput false if the caller converts the return value itself, e.g. by writing it to an Output
+     * @return the result of the command
+     */
+    ExecutionResult execute(String line, boolean convertOutput) {
+        if (line.trim().equals("?")) {
+            String hint = String.format(HINT_FORMAT, appName);
+            return ExecutionResult.builder().line(line).returnValue(hint).output(hint).build();
+        }
+
+        ShellCommand command = null;
+        Object[] parameters = null;
+        String header;
+        try {
+            TokenSpans tokens = lineTokens.tokenize(line);
+            if (tokens.isEmpty()) {
+                return ExecutionResult.builder().line(line).build();
+            }
+            command = lookupCommand(tokens.getString(0), tokens.size() - 1);
+            parameters = command.bindArguments(tokens, inputConverter);
+            header = formatHeader(command.getHeader(), parameters);
+        } catch (RuntimeException ex) {
+            // a ShellException, the exception of an input converter or a header not fitting the parameters
+            lastException = ex;
+            return ExecutionResult.builder().line(line).command(command).parameters(parameters).exception(ex).build();
+        }
+
+        return invoke(line, command, parameters, header, convertOutput);
+    }
+
+    /**
+     * Executes a step of a compiled script, see {@link #execute(String)}.
+     * The step is executed as plain line if it could not be resolved or the plan is out of date.
+     *
+     * @param script        the plan the step belongs to
+     * @param step          the step
+     * @param convertOutput false if the caller converts the return value itself
+     * @return the result of the command
+     */
+    ExecutionResult execute(CompiledScript script, CompiledScript.Step step, boolean convertOutput) {
+        if (!step.isResolved() || !script.isValidFor(this)) {
+            return execute(step.getLine(), convertOutput);
+        }
+        return invoke(step.getLine(), step.getCommand(), step.copyParameters(), step.getHeader(), convertOutput);
+    }
+
+    /**
+     * Executes all command lines one after the other, see {@link #execute(String)}.
+     * An exception does not stop the execution of the following lines.
+     *
+     * @param lines the command lines
+     * @return the results in the order of the lines
+     */
+    public List<ExecutionResult> executeAll(Iterable<String> lines) {
+        List<ExecutionResult> results = lines instanceof Collection ? new ArrayList<>(((Collection<?>) lines).size()) : new ArrayList<>();
+        executeAll(lines, results::add);
+        return results;
+    }
+
+    /**
+     * Executes all command lines one after the other and passes each result to the consumer as soon as it is
+     * available, so that the results of large batches need not be kept in memory.
+     *
+     * @param lines    the command lines
+     * @param consumer receives the result of every line
+     */
+    public void executeAll(Iterable<String> lines, Consumer<? super ExecutionResult> consumer) {
+        Objects.requireNonNull(consumer, "NULL is not permitted as value for consumer.");
+        for (String line : lines) {
+            consumer.accept(execute(line));
+        }
+    }
+
     // #################################################################################################################
+    private ExecutionResult invoke(String line, ShellCommand command, Object[] parameters, String header, boolean convertOutput) {
+        ExecutionResult.ExecutionResultBuilder result = ExecutionResult.builder()
+            .line(line)
+            .command(command)
+            .parameters(parameters)
+            .header(header);
+        long timeBefore = System.nanoTime();
+        try {
+            Object returnValue = command.invokeCommand(parameters);
+            result.durationNanos(System.nanoTime() - timeBefore);
+            result.returnValue(returnValue);
+            if (returnValue != null && convertOutput) {
+                result.output(outputConverter.convertOutput(returnValue));
+            }
+        } catch (InvocationTargetException ite) {
+            result.durationNanos(System.nanoTime() - timeBefore);
+            result.exception(ite.getCause());
+        } catch (RuntimeException ex) {
+            // a ShellException or the exception of an output converter
+            result.durationNanos(System.nanoTime() - timeBefore);
+            lastException = ex;
+            result.exception(ex);
+        }
+        return result.build();
+    }
+
+    private ShellCommand lookupCommand(String discriminator, int argCount) {
+        LastLookup last = lastLookup;
+        if (last.command != null && last.table == commandTable && last.version == commandTable.getVersion()
+            && last.argCount == argCount && last.discriminator.equals(discriminator)) {
+            return last.command;
+        }
+        ShellCommand command = commandTable.lookupCommand(discriminator, argCount);
+        last.table = commandTable;
+        last.discriminator = discriminator;
+        last.argCount = argCount;
+        last.version = commandTable.getVersion();
+        last.command = command;
+        return command;
+    }
+
+    /**
+     * The command found by the previous lookup. Scripts and batches often run the same command many times in a row,
+     * this spares them the lookup as long as the command table is unchanged.
+     */
+    private static final class LastLookup {
+        private CommandTable table;
+        private String discriminator;
+        private int argCount;
+        private int version;
+        private ShellCommand command;
+    }
 
     /**
      * Turns command execution time display on and off
@@ -249,6 +480,54 @@ public class Shell {
         this.displayTime = displayTime;
     }
 
+    /**
+     * Runs a script file in batch mode, continuing after failing lines.
+     *
+     * @param filename full file name of the script
+     * @return the report of the run
+     * @throws IOException if the script can not be read
+     * @see ScriptRunner
+     */
+    @Command(description = "Runs a script file without prompts, continuing after failing lines")
+    public ScriptReport runBatch(
+        @CommandParameter(name = "filename", description = "Full file name of the script") String filename) throws IOException {
+        return runBatch(filename, false);
+    }
+
+    /**
+     * Runs a script file in batch mode.
+     *
+     * @param filename full file name of the script
+     * @param failFast true to stop at the first failing line, false to continue
+     * @return the report of the run
+     * @throws IOException if the script can not be read
+     * @see ScriptRunner
+     */
+    @Command(description = "Runs a script file without prompts")
+    public ScriptReport runBatch(
+        @CommandParameter(name = "filename", description = "Full file name of the script") String filename,
+        @CommandParameter(name = "fail-fast", description = "true to stop at the first failing line") boolean failFast) throws IOException {
+        ScriptRunner runner = ScriptRunner.builder()
+            .shell(this)
+            .errorPolicy(failFast ? ScriptRunner.ErrorPolicy.FAIL_FAST : ScriptRunner.ErrorPolicy.CONTINUE)
+            .build();
+        return runner.run(Paths.get(filename));
+    }
+
+    /**
+     * Runs a script file from its cached execution plan, compiling it only if it is new or changed.
+     *
+     * @param filename full file name of the script
+     * @return the report of the run
+     * @throws IOException if the script can not be read
+     * @see ScriptCompiler
+     */
+    @Command(description = "Runs a script file from its cached execution plan, continuing after failing lines")
+    public ScriptReport runCompiled(
+        @CommandParameter(name = "filename", description = "Full file name of the script") String filename) throws IOException {
+        return ScriptRunner.builder().shell(this).compiler(getScriptCompiler()).build().run(Paths.get(filename));
+    }
+
     /**
      * Returns last thrown exception
      */
@@ -16,6 +16,8 @@
 package de.marabs.common.shell;
 
 import de.marabs.common.shell.exception.ShellException;
+import de.marabs.common.shell.input.ArgumentBinder;
+import de.marabs.common.shell.input.InputConversion;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -38,30 +40,44 @@ public class ShellCommand {
     @Getter @Setter
     private String abbreviation;
     @Getter
-    private final Method method;
+    private final CommandDefinition definition;
     @Getter @Setter
     private String header;
     private final Object handler;
+    private final CommandInvoker invoker;
     @Getter
     private final ShellCommandParameter[] paramSpecs;
+    @Getter
+    private final int arity;
+    @Getter
+    private final boolean varArgs;
+    @Getter
+    private final CommandStatistics statistics = new CommandStatistics();
+    private ArgumentBinder binder;
 
     public ShellCommand(Object handler, Method method, String prefix, String name) {
-        assert method != null;
-        this.paramSpecs = ShellCommandParameter.forMethod(method);
-        assert paramSpecs.length == method.getParameterTypes().length;
-        this.method = method;
+        this(handler, CommandDefinition.forMethod(method), prefix, name);
+    }
+
+    public ShellCommand(Object handler, CommandDefinition definition, String prefix, String name) {
+        assert definition != null;
+        this.definition = definition;
+        this.paramSpecs = definition.getParameters();
         this.prefix = prefix;
         this.name = name;
         this.handler = handler;
+        this.arity = definition.getArity();
+        this.varArgs = definition.isVarArgs();
+        this.invoker = definition.getInvoker();
 
-        this.description = makeCommandDescription(method, paramSpecs);
+        this.description = makeCommandDescription(definition, paramSpecs);
     }
 
-    private static String makeCommandDescription(Method method, ShellCommandParameter[] paramSpecs) {
+    private static String makeCommandDescription(CommandDefinition definition, ShellCommandParameter[] paramSpecs) {
         StringBuilder result = new StringBuilder();
-        result.append(method.getName());
+        result.append(definition.getMethodName());
         result.append('(');
-        Class<?>[] paramTypes = method.getParameterTypes();
+        Class<?>[] paramTypes = definition.getParameterTypes();
         assert paramTypes.length == paramSpecs.length;
         boolean first = true;
         for (int i = 0; i < paramTypes.length; i++) {
@@ -78,36 +94,85 @@ public class ShellCommand {
             }
         }
         result.append(") : ");
-        result.append(method.getReturnType().getSimpleName());
+        result.append(definition.getReturnType().getSimpleName());
         return result.toString();
     }
 
+    /**
+     * Returns the command method.
+     * Commands of a generated registry resolve their method only when it is asked for.
+     *
+     * @return the command method
+     */
+    public Method getMethod() {
+        return definition.getMethod();
+    }
+
+    public Class<?>[] getParameterTypes() {
+        return definition.getParameterTypes();
+    }
+
+    /**
+     * Converts the arguments of a line to the parameters of this command.
+     * The binder is kept until the converters of the conversion change.
+     *
+     * @param tokens     Tokens of the line, the first token is the command
+     * @param conversion Conversion of the shell
+     * @return the converted parameters
+     */
+    public Object[] bindArguments(TokenSpans tokens, InputConversion conversion) {
+        ArgumentBinder current = binder;
+        if (current == null || !current.isBoundTo(conversion)) {
+            current = ArgumentBinder.of(conversion, definition.getParameterTypes(), varArgs);
+            binder = current;
+        }
+        return current.bind(tokens);
+    }
+
     public Object invoke(Object[] parameters) throws ShellException {
-        assert method != null;
         try {
-            return method.invoke(handler, parameters);
+            return invokeCommand(parameters);
         } catch (InvocationTargetException ite) {
             return ite.getCause();
+        }
+    }
+
+    /**
+     * Invokes the command like {@link #invoke(Object[])}, but keeps an exception thrown by the command apart from
+     * a returned value. Every invocation is recorded in the statistics of the command.
+     *
+     * @param parameters the converted parameters
+     * @return the value returned by the command
+     * @throws InvocationTargetException if the command itself throws an exception
+     * @throws ShellException            if the command can not be invoked with the parameters
+     */
+    Object invokeCommand(Object[] parameters) throws InvocationTargetException {
+        long timeBefore = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = invoker.invoke(handler, parameters);
+            failed = false;
+            return result;
+        } catch (InvocationTargetException ite) {
+            throw ite;
         } catch (Exception ex) {
             throw new ShellException(ex);
+        } finally {
+            statistics.record(System.nanoTime() - timeBefore, failed);
         }
     }
 
     public boolean canBeDenotedBy(String commandName) {
-        return commandName.equals(prefix + name) || commandName.equals(prefix + abbreviation);
-    }
-
-    public int getArity() {
-        return method.getParameterTypes().length;
+        return commandName.equals(prefix + name) || (abbreviation != null && commandName.equals(prefix + abbreviation));
     }
 
     public boolean startsWith(String prefix) {
-        return (this.prefix + abbreviation).startsWith(prefix) || (this.prefix + name).startsWith(prefix);
+        return (abbreviation != null && (this.prefix + abbreviation).startsWith(prefix)) || (this.prefix + name).startsWith(prefix);
     }
 
     @Override
     public String toString() {
         return prefix + name + "\t" + (abbreviation != null ? prefix + abbreviation : "") + "\t" +
-            method.getParameterTypes().length + (method.isVarArgs() ? "+" : "") + "\t" + description;
+            arity + (varArgs ? "+" : "") + "\t" + description;
     }
 }
\ No newline at end of file
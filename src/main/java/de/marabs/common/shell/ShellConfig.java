@@ -48,7 +48,7 @@ public class ShellConfig {
         return ShellConfig.builder()
             .input(input)
             .output(output)
-            .auxHandlers(addAuxHandlers)
+            .auxHandlers(allAuxHandlers)
             .displayTime(displayTime)
             .build();
     }
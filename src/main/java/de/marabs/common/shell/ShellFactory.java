@@ -47,6 +47,7 @@ public final class ShellFactory {
 
         theShell.addMainHandler(theShell, "!");
         theShell.addMainHandler(new HelpCommandHandler(), "?");
+        theShell.addMainHandler(new StatisticsCommandHandler(), "?");
         for (Object h : handlers) {
             theShell.addMainHandler(h, "");
         }
@@ -82,6 +83,7 @@ public final class ShellFactory {
 
         theShell.addMainHandler(theShell, "!");
         theShell.addMainHandler(new HelpCommandHandler(), "?");
+        theShell.addMainHandler(new StatisticsCommandHandler(), "?");
         theShell.addMainHandler(mainHandler, "");
 
         return theShell;
@@ -104,6 +106,7 @@ public final class ShellFactory {
     /**
      * Facade method facilitating the creation of subshell.
      * Subshell is created and run inside Command method and shares the same IO and naming strategy.
+     * The commands of the aux handlers are shared with the parent's other subshells which have the same aux handlers.
      * <p>
      * Run the obtained Shell with commandLoop().
      *
@@ -120,12 +123,13 @@ public final class ShellFactory {
         List<String> newPath = new ArrayList<>(parent.getPath());
         newPath.add(pathElement);
 
-        Shell subshell = new Shell(parent.getShellConfig().createWithAddedAuxHandlers(auxHandlers),
-            new CommandTable(parent.getCommandTable().getNamer()), newPath);
+        ShellConfig config = parent.getShellConfig().createWithAddedAuxHandlers(auxHandlers);
+        Shell subshell = new Shell(config, parent.createSubshellCommandTable(config.getAuxHandlers()), newPath);
 
         subshell.setAppName(appName);
         subshell.addMainHandler(subshell, "!");
         subshell.addMainHandler(new HelpCommandHandler(), "?");
+        subshell.addMainHandler(new StatisticsCommandHandler(), "?");
 
         subshell.addMainHandler(mainHandler, "");
         return subshell;
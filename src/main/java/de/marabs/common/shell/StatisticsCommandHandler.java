@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Statistics command handler (usually prefixed by '?').
+ * Shows the latency percentiles and wall-clock throughput of the commands, slowest first.
+ *
+ * @author Martin Absmeier
+ */
+public class StatisticsCommandHandler implements ShellDependent {
+
+    private static final String STATS_HEADER = "command\tcalls\terrors\tmean\tp50\tp99\tp999\tmax\tops/s";
+    private Shell owner;
+
+    public void cliSetShell(Shell theShell) {
+        owner = theShell;
+    }
+
+    @Command(description = "Show latency percentiles and throughput of all invoked commands, by total time spent",
+        header = STATS_HEADER)
+    public List<String> stats() {
+        List<ShellCommand> invoked = new ArrayList<>();
+        for (ShellCommand command : owner.getCommandTable().getCommandTable()) {
+            if (command.getStatistics().getInvocations() > 0) {
+                invoked.add(command);
+            }
+        }
+        invoked.sort(Comparator.comparingDouble(StatisticsCommandHandler::totalTime).reversed());
+
+        List<String> result = new ArrayList<>(invoked.size());
+        for (ShellCommand command : invoked) {
+            result.add(formatStatistics(command));
+        }
+        return result;
+    }
+
+    @Command(description = "Reset the statistics of all commands")
+    public String resetStats() {
+        for (ShellCommand command : owner.getCommandTable().getCommandTable()) {
+            command.getStatistics().reset();
+        }
+        return "Statistics reset";
+    }
+
+    // ################################################################################################################
+    private static double totalTime(ShellCommand command) {
+        CommandStatistics statistics = command.getStatistics();
+        return statistics.getMeanLatency() * statistics.getInvocations();
+    }
+
+    private static String formatStatistics(ShellCommand command) {
+        CommandStatistics statistics = command.getStatistics();
+        return String.format(Locale.ROOT, "%s%s\t%d\t%d\t%s\t%s\t%s\t%s\t%s\t%.1f",
+                             command.getPrefix(),
+                             command.getName(),
+                             statistics.getInvocations(),
+                             statistics.getErrors(),
+                             formatNanos(Math.round(statistics.getMeanLatency())),
+                             formatNanos(statistics.getLatencyAtPercentile(50.0)),
+                             formatNanos(statistics.getLatencyAtPercentile(99.0)),
+                             formatNanos(statistics.getLatencyAtPercentile(99.9)),
+                             formatNanos(statistics.getMaxLatency()),
+                             statistics.getThroughput());
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000L) {
+            return nanos + "ns";
+        } else if (nanos < 1_000_000L) {
+            return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+        } else if (nanos < 1_000_000_000L) {
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        } else {
+            return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@code TokenSpans} is the allocation free counterpart of {@link Token#tokenize(String)}.
+ * <p>
+ * The tokens of one input line are written as (start, end, flags) spans into an int array which is reused for every
+ * line, strings are only created when a token is asked for. Tokens containing quotes are unescaped on a slow path
+ * when they are materialized. The start of a span is the same index Token#getIndex reports, so errors can still be
+ * indicated exactly.
+ * <p>
+ * An instance is not thread safe, the spans are valid until the next line is tokenized.
+ *
+ * @author Martin Absmeier
+ */
+public final class TokenSpans {
+
+    private static final int WHITESPACE = 0;
+    private static final int WORD = 1;
+    private static final int STRINGDQ = 2;
+    private static final int STRINGSQ = 3;
+    private static final int COMMENT = 4;
+
+    private static final int SPAN_SIZE = 3;
+    private static final int START = 0;
+    private static final int END = 1;
+    private static final int FLAGS = 2;
+    private static final int QUOTED = 1;
+
+    private String line = "";
+    private int[] spans;
+    private int size = 0;
+
+    public TokenSpans() {
+        this(16);
+    }
+
+    /**
+     * @param expectedTokens Number of tokens per line the span array is sized for initially
+     */
+    public TokenSpans(int expectedTokens) {
+        spans = new int[Math.max(1, expectedTokens) * SPAN_SIZE];
+    }
+
+    /**
+     * State machine input string tokenizer, see {@link Token#tokenize(String)}.
+     * Replaces the spans of the previous line.
+     *
+     * @param input String to be tokenized
+     * @return this instance
+     */
+    public TokenSpans tokenize(final String input) {
+        size = 0;
+        line = Objects.isNull(input) ? "" : input;
+
+        int state = WHITESPACE;
+        int tokenIndex = -1;
+        int flags = 0;
+
+        final int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char ch = line.charAt(i); // character in hand
+            switch (state) {
+                case WHITESPACE:
+                    if (!Character.isWhitespace(ch)) {
+                        tokenIndex = i;
+                        flags = 0;
+                        if (ch == '"') {
+                            state = STRINGDQ;
+                            flags = QUOTED;
+                        } else if (ch == '\'') {
+                            state = STRINGSQ;
+                            flags = QUOTED;
+                        } else if (ch == '#') {
+                            state = COMMENT;
+                        } else {
+                            state = WORD;
+                        }
+                    }
+                    break;
+
+                case WORD:
+                    if (Character.isWhitespace(ch)) {
+                        addSpan(tokenIndex, i, flags);
+                        state = WHITESPACE;
+                    } else if (ch == '"' || ch == '\'') {
+                        flags = QUOTED;
+                        if (i < length - 1 && line.charAt(i + 1) == ch) {
+                            i++; // doubled quote, keep state
+                        } else {
+                            state = ch == '"' ? STRINGDQ : STRINGSQ;
+                        }
+                    } else if (ch == '#') {
+                        addSpan(tokenIndex, i, flags);
+                        state = COMMENT;
+                    }
+                    break;
+
+                case STRINGDQ:
+                case STRINGSQ:
+                    if (ch == (state == STRINGDQ ? '"' : '\'')) {
+                        if (i < length - 1 && line.charAt(i + 1) == ch) {
+                            i++; // doubled quote, keep state
+                        } else {
+                            state = WORD;
+                        }
+                    }
+                    break;
+
+                case COMMENT:
+                    // eat ch
+                    break;
+
+                default:
+                    assert false : "Unknown state in TokenSpans.tokenize() state machine";
+                    break;
+            }
+        }
+
+        if (state == WORD || state == STRINGDQ || state == STRINGSQ) {
+            addSpan(tokenIndex, length, flags);
+        }
+        return this;
+    }
+
+    public String getLine() {
+        return line;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param token Index of the token
+     * @return index of the token in the input line (same as Token#getIndex)
+     */
+    public int getStart(int token) {
+        return spans[checkIndex(token) * SPAN_SIZE + START];
+    }
+
+    /**
+     * @param token Index of the token
+     * @return index in the input line after the last character of the token
+     */
+    public int getEnd(int token) {
+        return spans[checkIndex(token) * SPAN_SIZE + END];
+    }
+
+    /**
+     * @param token Index of the token
+     * @return true if the token contains quotes, i.e. its string differs from the characters of its span
+     */
+    public boolean isQuoted(int token) {
+        return (spans[checkIndex(token) * SPAN_SIZE + FLAGS] & QUOTED) != 0;
+    }
+
+    /**
+     * Materializes the string of a token.
+     *
+     * @param token Index of the token
+     * @return the token string, as Token#getString would return it
+     */
+    public String getString(int token) {
+        int start = getStart(token);
+        int end = getEnd(token);
+        return isQuoted(token) ? unescape(line, start, end) : line.substring(start, end);
+    }
+
+    /**
+     * @param token Index of the token
+     * @return the token as Token object, e.g. to report an error
+     */
+    public Token getToken(int token) {
+        return new Token(getStart(token), getString(token));
+    }
+
+    /**
+     * @return all tokens of the line as Token objects
+     */
+    public List<Token> toTokens() {
+        List<Token> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(getToken(i));
+        }
+        return result;
+    }
+
+    /**
+     * Restores the spans of a line tokenized before, e.g. read from a cache.
+     *
+     * @param input Line the spans belong to
+     * @param spans Start, end and quoted flag (1 or 0) of every token
+     * @param count Number of tokens
+     * @return this instance
+     */
+    TokenSpans restore(String input, int[] spans, int count) {
+        size = 0;
+        line = input;
+        for (int i = 0; i < count; i++) {
+            int start = spans[i * SPAN_SIZE + START];
+            int end = spans[i * SPAN_SIZE + END];
+            if (start < 0 || start > end || end > input.length()) {
+                throw new IllegalArgumentException("Span " + start + ".." + end + " is outside of the line");
+            }
+            addSpan(start, end, spans[i * SPAN_SIZE + FLAGS] & QUOTED);
+        }
+        return this;
+    }
+
+    // #################################################################################################################
+    private void addSpan(int start, int end, int flags) {
+        int offset = size * SPAN_SIZE;
+        if (offset + SPAN_SIZE > spans.length) {
+            int[] grown = new int[spans.length * 2];
+            System.arraycopy(spans, 0, grown, 0, spans.length);
+            spans = grown;
+        }
+        spans[offset + START] = start;
+        spans[offset + END] = end;
+        spans[offset + FLAGS] = flags;
+        size++;
+    }
+
+    private int checkIndex(int token) {
+        if (token < 0 || token >= size) {
+            throw new IndexOutOfBoundsException("Token " + token + " of " + size);
+        }
+        return token;
+    }
+
+    /**
+     * Slow path of getString: removes the quotes of a quoted token, "" and '' are unescaped to a single quote.
+     */
+    private static String unescape(String line, int start, int end) {
+        StringBuilder token = new StringBuilder(end - start);
+        int state = WORD;
+        for (int i = start; i < end; i++) {
+            char ch = line.charAt(i);
+            if (state == WORD) {
+                if (ch == '"' || ch == '\'') {
+                    if (i > start && i < end - 1 && line.charAt(i + 1) == ch) {
+                        token.append(ch);
+                        i++;
+                    } else {
+                        state = ch == '"' ? STRINGDQ : STRINGSQ;
+                    }
+                } else {
+                    token.append(ch);
+                }
+            } else if (ch == (state == STRINGDQ ? '"' : '\'')) {
+                if (i < end - 1 && line.charAt(i + 1) == ch) {
+                    token.append(ch);
+                    i++;
+                } else {
+                    state = WORD;
+                }
+            } else {
+                token.append(ch);
+            }
+        }
+        return token.toString();
+    }
+}
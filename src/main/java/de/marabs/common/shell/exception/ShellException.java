@@ -17,6 +17,10 @@ package de.marabs.common.shell.exception;
 
 import de.marabs.common.shell.Token;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Root exception for Cliche.
  *
@@ -25,6 +29,8 @@ import de.marabs.common.shell.Token;
 public class ShellException extends RuntimeException {
     private static final long serialVersionUID = -4432160786685693109L;
 
+    private List<String> suggestions = Collections.emptyList();
+
     /**
      * Constructs a new runtime exception with the specified detail message.
      * The cause is not initialized, and may subsequently be initialized by a call to {@link #initCause}.
@@ -59,10 +65,25 @@ public class ShellException extends RuntimeException {
         super(cause);
     }
 
+    /**
+     * Returns what the user may have meant instead, e.g. the names of commands similar to an unknown one.
+     *
+     * @return the suggestions, an empty list if there are none
+     */
+    public List<String> getSuggestions() {
+        return suggestions;
+    }
+
     public static ShellException createCommandNotFound(String commandName) {
         return new ShellException("Unknown command: ".concat(Token.escapeString(commandName)));
     }
 
+    public static ShellException createCommandNotFound(String commandName, List<String> suggestions) {
+        ShellException exception = createCommandNotFound(commandName);
+        exception.suggestions = Collections.unmodifiableList(new ArrayList<>(suggestions));
+        return exception;
+    }
+
     public static ShellException createCommandNotFoundForArgNum(String commandName, int argCount) {
         return new ShellException("There's no command ".concat(Token.escapeString(commandName))
                                     .concat(" taking " + argCount).concat(" arguments"));
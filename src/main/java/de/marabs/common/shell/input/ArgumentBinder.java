@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.input;
+
+import de.marabs.common.shell.TokenSpans;
+import de.marabs.common.shell.exception.ShellException;
+import de.marabs.common.shell.exception.TokenException;
+
+import java.lang.reflect.Array;
+
+/**
+ * {@code ArgumentBinder} converts the arguments of a command line to the parameters of one command.
+ * <p>
+ * The conversion of every parameter position and of the varargs component type is resolved when the binder is
+ * created, binding a line only allocates the parameter array and the converted values. A binder is valid as long as
+ * no converter is added to or removed from the InputConversion it was created for, see {@link #isBoundTo}.
+ * <p>
+ * Varargs of type int[], long[], double[], float[] and boolean[] are parsed straight into the array if no converter
+ * is registered for the component type. Plain decimal integers and booleans are parsed from the characters of the
+ * token without creating a string; anything else takes the regular conversion, which also reports the errors.
+ *
+ * @author Martin Absmeier
+ */
+public final class ArgumentBinder {
+
+    private static final int MAX_PLAIN_DIGITS = 18; // every decimal number of 18 digits fits into a long
+
+    private final InputConversion conversion;
+    private final int version;
+    private final InputConversion.Resolution[] parameters;
+    private final Class<?> varArgsType;
+    private final InputConversion.Resolution varArgs;
+
+    private ArgumentBinder(InputConversion conversion, Class<?>[] paramClasses, boolean isVarArgs) {
+        this.conversion = conversion;
+        this.version = conversion.getVersion();
+        int fixed = isVarArgs ? paramClasses.length - 1 : paramClasses.length;
+        this.parameters = new InputConversion.Resolution[fixed];
+        for (int i = 0; i < fixed; i++) {
+            parameters[i] = conversion.resolve(paramClasses[i]);
+        }
+        if (isVarArgs) {
+            Class<?> varClass = paramClasses[fixed];
+            assert varClass.isArray();
+            this.varArgsType = varClass.getComponentType();
+            this.varArgs = conversion.resolve(varArgsType);
+        } else {
+            this.varArgsType = null;
+            this.varArgs = null;
+        }
+    }
+
+    /**
+     * Creates a binder for the parameters of a command.
+     *
+     * @param conversion   Conversion the converters are resolved from
+     * @param paramClasses Parameter types of the command
+     * @param isVarArgs    true if the last parameter is varargs
+     * @return the binder
+     */
+    public static ArgumentBinder of(InputConversion conversion, Class<?>[] paramClasses, boolean isVarArgs) {
+        return new ArgumentBinder(conversion, paramClasses, isVarArgs);
+    }
+
+    /**
+     * @param conversion Conversion to check
+     * @return true if the binder was created for the conversion and its converters did not change since
+     */
+    public boolean isBoundTo(InputConversion conversion) {
+        return this.conversion == conversion && version == conversion.getVersion();
+    }
+
+    /**
+     * Converts the arguments of a tokenized line, strings of the tokens are only created for the conversion.
+     *
+     * @param tokens Tokens of the line, the first token is the command
+     * @return converted parameters
+     */
+    public Object[] bind(TokenSpans tokens) {
+        assert varArgs != null || parameters.length == tokens.size() - 1;
+
+        int fixed = parameters.length;
+        Object[] result = new Object[varArgs != null ? fixed + 1 : fixed];
+        for (int i = 0; i < fixed; i++) {
+            result[i] = convertToken(tokens, i + 1, parameters[i]);
+        }
+        if (varArgs != null) {
+            result[fixed] = bindVarArgs(tokens, fixed + 1, tokens.size() - 1 - fixed);
+        }
+        return result;
+    }
+
+    // #################################################################################################################
+    private Object bindVarArgs(TokenSpans tokens, int first, int count) {
+        if (!varArgs.hasConverters()) {
+            if (varArgsType == int.class) {
+                int[] values = new int[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = parseInt(tokens, first + i);
+                }
+                return values;
+            } else if (varArgsType == long.class) {
+                long[] values = new long[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = parseLong(tokens, first + i);
+                }
+                return values;
+            } else if (varArgsType == double.class) {
+                double[] values = new double[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = parseDouble(tokens, first + i);
+                }
+                return values;
+            } else if (varArgsType == float.class) {
+                float[] values = new float[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = parseFloat(tokens, first + i);
+                }
+                return values;
+            } else if (varArgsType == boolean.class) {
+                boolean[] values = new boolean[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = parseBoolean(tokens, first + i);
+                }
+                return values;
+            }
+        }
+
+        Object theArray = Array.newInstance(varArgsType, count);
+        for (int i = 0; i < count; i++) {
+            Array.set(theArray, i, convertToken(tokens, first + i, varArgs));
+        }
+        return theArray;
+    }
+
+    private int parseInt(TokenSpans tokens, int index) {
+        if (isPlainInteger(tokens, index)) {
+            long value = parsePlainInteger(tokens.getLine(), tokens.getStart(index), tokens.getEnd(index));
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+        }
+        return (Integer) convertToken(tokens, index, varArgs);
+    }
+
+    private long parseLong(TokenSpans tokens, int index) {
+        if (isPlainInteger(tokens, index)) {
+            return parsePlainInteger(tokens.getLine(), tokens.getStart(index), tokens.getEnd(index));
+        }
+        return (Long) convertToken(tokens, index, varArgs);
+    }
+
+    /**
+     * Double and float are parsed from the token string, parsing them exactly from characters is left to the JDK.
+     */
+    private static double parseDouble(TokenSpans tokens, int index) {
+        try {
+            return Double.parseDouble(tokens.getString(index));
+        } catch (NumberFormatException ex) {
+            throw new TokenException(tokens.getToken(index), ex);
+        }
+    }
+
+    private static float parseFloat(TokenSpans tokens, int index) {
+        try {
+            return Float.parseFloat(tokens.getString(index));
+        } catch (NumberFormatException ex) {
+            throw new TokenException(tokens.getToken(index), ex);
+        }
+    }
+
+    private static boolean parseBoolean(TokenSpans tokens, int index) {
+        if (tokens.isQuoted(index)) {
+            return Boolean.parseBoolean(tokens.getString(index));
+        }
+        int start = tokens.getStart(index);
+        return tokens.getEnd(index) - start == 4 && tokens.getLine().regionMatches(true, start, "true", 0, 4);
+    }
+
+    /**
+     * @return true if the token is an optional sign followed by at most 18 ASCII digits
+     */
+    private static boolean isPlainInteger(TokenSpans tokens, int index) {
+        if (tokens.isQuoted(index)) {
+            return false;
+        }
+        String line = tokens.getLine();
+        int start = tokens.getStart(index);
+        int end = tokens.getEnd(index);
+        char first = line.charAt(start);
+        if (first == '-' || first == '+') {
+            start++;
+        }
+        if (start == end || end - start > MAX_PLAIN_DIGITS) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char ch = line.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parsePlainInteger(String line, int start, int end) {
+        boolean negative = line.charAt(start) == '-';
+        if (negative || line.charAt(start) == '+') {
+            start++;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (line.charAt(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static Object convertToken(TokenSpans tokens, int index, InputConversion.Resolution resolution) {
+        try {
+            return resolution.convert(tokens.getString(index));
+        } catch (ShellException ex) {
+            throw new TokenException(tokens.getToken(index), ex.getMessage());
+        } catch (NumberFormatException ex) {
+            throw new TokenException(tokens.getToken(index), ex);
+        }
+    }
+}
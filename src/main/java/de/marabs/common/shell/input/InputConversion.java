@@ -16,49 +16,59 @@
 package de.marabs.common.shell.input;
 
 import de.marabs.common.shell.Token;
+import de.marabs.common.shell.TokenSpans;
 import de.marabs.common.shell.exception.ShellException;
 import de.marabs.common.shell.exception.TokenException;
+import lombok.Getter;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * {@code InputConversion} responsible for converting strings to object.<br>
  * Elementary types can be handled by itself, and arbitrary types can be handled by registering InputConverter instances.
  * It also gets all converters declared in a handler object through addDeclaredConverters method.<br>
  * Used by Shell and will also be used by ShellCommand.
+ * <p>
+ * The converters to ask and the elementary conversion are resolved once per target class and cached until a
+ * converter is added or removed.
  *
  * @author Martin Absmeier
  */
 public class InputConversion {
 
     private final List<InputConverter> inputConverters = new ArrayList<>();
+    /**
+     * Incremented whenever a converter is added or removed, so that converted parameters can be cached.
+     */
+    @Getter
+    private int version = 0;
+    private ClassValue<Resolution> resolutions = newResolutions();
 
     public void addConverter(InputConverter converter) {
         Objects.requireNonNull(converter, "Converter == null");
         inputConverters.add(converter);
+        converterChanged();
     }
 
     public boolean removeConverter(InputConverter converter) {
-        return inputConverters.remove(converter);
+        boolean removed = inputConverters.remove(converter);
+        if (removed) {
+            converterChanged();
+        }
+        return removed;
     }
 
     public Object convertInput(String string, Class<?> aClass) {
-        for (InputConverter currentConverter : inputConverters) {
-            Object conversionResult = currentConverter.convertInput(string, aClass);
-            if (conversionResult != null) {
-                if (!aClass.isAssignableFrom(conversionResult.getClass())) {
-                    throw new ShellException("Registered asg.Cliche converter " + currentConverter + " returns wrong result");
-                } else {
-                    return conversionResult;
-                }
-            }
-        }
-        return convertArgToElementaryType(string, aClass);
+        return resolutions.get(aClass).convert(string);
     }
 
     public final Object[] convertToParameters(List<Token> tokens, Class<?>[] paramClasses, boolean isVarArgs) {
@@ -98,6 +108,19 @@ public class InputConversion {
         return parameters;
     }
 
+    /**
+     * Converts the arguments of a tokenized line, strings of the tokens are only created for the conversion.
+     *
+     * @param tokens       Tokens of the line, the first token is the command
+     * @param paramClasses Parameter types of the command
+     * @param isVarArgs    true if the last parameter is varargs
+     * @return converted parameters
+     * @see #convertToParameters(List, Class[], boolean)
+     */
+    public final Object[] convertToParameters(TokenSpans tokens, Class<?>[] paramClasses, boolean isVarArgs) {
+        return ArgumentBinder.of(this, paramClasses, isVarArgs).bind(tokens);
+    }
+
     public void addDeclaredConverters(Object handler) {
         Field[] fields = handler.getClass().getFields();
         for (Field field : fields) {
@@ -122,30 +145,107 @@ public class InputConversion {
             && InputConverter.class.isAssignableFrom(field.getType().getComponentType());
     }
 
-    private static Object convertArgToElementaryType(String string, Class<?> aClass) {
-        if (aClass.equals(String.class) || aClass.isInstance(string)) {
-            return string;
+    /**
+     * @param aClass Target class
+     * @return the conversion to the class, valid until a converter is added or removed
+     */
+    Resolution resolve(Class<?> aClass) {
+        return resolutions.get(aClass);
+    }
+
+    private void converterChanged() {
+        version++;
+        resolutions = newResolutions();
+    }
+
+    private ClassValue<Resolution> newResolutions() {
+        return new ClassValue<>() {
+            @Override
+            protected Resolution computeValue(Class<?> type) {
+                List<InputConverter> converters = new ArrayList<>();
+                for (InputConverter converter : inputConverters) {
+                    Set<Class<?>> supportedTypes = converter.getSupportedTypes();
+                    if (supportedTypes.isEmpty() || supportedTypes.contains(type)) {
+                        converters.add(converter);
+                    }
+                }
+                return new Resolution(type, converters.toArray(new InputConverter[0]), elementaryConversionTo(type));
+            }
+        };
+    }
+
+    private static Function<String, Object> elementaryConversionTo(Class<?> aClass) {
+        if (aClass.equals(String.class) || aClass.isAssignableFrom(String.class)) {
+            return string -> string;
         } else if (aClass.equals(Integer.class) || aClass.equals(Integer.TYPE)) {
-            return Integer.parseInt(string);
+            return Integer::parseInt;
         } else if (aClass.equals(Long.class) || aClass.equals(Long.TYPE)) {
-            return Long.parseLong(string);
+            return Long::parseLong;
         } else if (aClass.equals(Double.class) || aClass.equals(Double.TYPE)) {
-            return Double.parseDouble(string);
+            return Double::parseDouble;
         } else if (aClass.equals(Float.class) || aClass.equals(Float.TYPE)) {
-            return Float.parseFloat(string);
+            return Float::parseFloat;
         } else if (aClass.equals(Boolean.class) || aClass.equals(Boolean.TYPE)) {
-            return Boolean.parseBoolean(string);
+            return Boolean::parseBoolean;
         } else {
-            return createClass(string, aClass);
+            return stringConstructorOf(aClass);
         }
     }
 
-    private static Object createClass(String string, Class<?> aClass) {
+    /**
+     * Binds the public constructor taking a String once, a class without one fails when it is converted to.
+     */
+    private static Function<String, Object> stringConstructorOf(Class<?> aClass) {
+        MethodHandle constructor;
         try {
-            Constructor<?> constructor = aClass.getConstructor(String.class);
-            return constructor.newInstance(string);
-        } catch (Exception ex) {
-            throw new ShellException("Can not instantiate class: " + aClass.getName(), ex);
+            constructor = MethodHandles.publicLookup().findConstructor(aClass, MethodType.methodType(void.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            return string -> {
+                throw new ShellException("Can not instantiate class: " + aClass.getName(), ex);
+            };
+        }
+        return string -> {
+            try {
+                return constructor.invoke(string);
+            } catch (Throwable ex) {
+                throw new ShellException("Can not instantiate class: " + aClass.getName(), ex);
+            }
+        };
+    }
+
+    /**
+     * Converters to ask for one target class and the conversion used if none of them converts.
+     */
+    static final class Resolution {
+        private final Class<?> type;
+        private final InputConverter[] converters;
+        private final Function<String, Object> elementary;
+
+        private Resolution(Class<?> type, InputConverter[] converters, Function<String, Object> elementary) {
+            this.type = type;
+            this.converters = converters;
+            this.elementary = elementary;
+        }
+
+        /**
+         * @return true if a registered converter is asked before the elementary conversion
+         */
+        boolean hasConverters() {
+            return converters.length > 0;
+        }
+
+        Object convert(String string) {
+            for (InputConverter currentConverter : converters) {
+                Object conversionResult = currentConverter.convertInput(string, type);
+                if (conversionResult != null) {
+                    if (!type.isAssignableFrom(conversionResult.getClass())) {
+                        throw new ShellException("Registered asg.Cliche converter " + currentConverter + " returns wrong result");
+                    } else {
+                        return conversionResult;
+                    }
+                }
+            }
+            return elementary.apply(string);
         }
     }
-}
\ No newline at end of file
+}
@@ -18,6 +18,9 @@ package de.marabs.common.shell.input;
 import de.marabs.common.shell.Shell;
 import de.marabs.common.shell.exception.ShellException;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * This interface is used by the Shell to support new argument types.
  * It converts string to an object of given class.
@@ -38,4 +41,13 @@ public interface InputConverter {
      * @see Shell
      */
     Object convertInput(String original, Class<?> toClass) throws ShellException;
+
+    /**
+     * The classes this converter converts to, InputConversion only asks it for these classes.
+     *
+     * @return the supported target classes, an empty set if the converter has to be asked for every class
+     */
+    default Set<Class<?>> getSupportedTypes() {
+        return Collections.emptySet();
+    }
 }
\ No newline at end of file
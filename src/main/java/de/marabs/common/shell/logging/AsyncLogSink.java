@@ -0,0 +1,259 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.logging;
+
+import de.marabs.common.shell.exception.ShellException;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decouples the shell from slow log storage: records are put into a bounded ring buffer and written to the
+ * delegate sink by a background thread, all records available at once are written as one.
+ * <p>
+ * Records are written in the order they were accepted, whatever the {@link OverflowPolicy}. {@link #flush()} waits
+ * until every record accepted before has been written, so a log closed or switched by ConsoleIO is complete.
+ *
+ * @author Martin Absmeier
+ */
+public class AsyncLogSink implements LogSink {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int OVERFLOW_CAPACITY_FACTOR = 64;
+    private static final long WAIT_MILLIS = 100;
+
+    private final LogSink delegate;
+    @Getter
+    private final OverflowPolicy overflowPolicy;
+    private final String[] ring;
+    private int head = 0;
+    private int size = 0;
+    private final ArrayDeque<String> overflow = new ArrayDeque<>();
+    private final int overflowCapacity;
+    private long acceptedRecords = 0;
+    private long writtenRecords = 0;
+    private boolean closed = false;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private final LongAdder droppedRecords = new LongAdder();
+    private final LongAdder spilledRecords = new LongAdder();
+    private volatile RuntimeException failure = null;
+    private final Thread writer;
+
+    /**
+     * Creates the sink with the default overflow capacity and starts its writer thread.
+     *
+     * @param delegate       the sink the records are written to by the writer thread
+     * @param capacity       number of records the ring buffer holds, 0 for the default of 1024
+     * @param overflowPolicy what to do with a record if the ring buffer is full, null for BLOCK
+     */
+    public AsyncLogSink(LogSink delegate, int capacity, OverflowPolicy overflowPolicy) {
+        this(delegate, capacity, overflowPolicy, 0);
+    }
+
+    /**
+     * Creates the sink and starts its writer thread.
+     *
+     * @param delegate         the sink the records are written to by the writer thread
+     * @param capacity         number of records the ring buffer holds, 0 for the default of 1024
+     * @param overflowPolicy   what to do with a record if the ring buffer is full, null for BLOCK
+     * @param overflowCapacity number of records the overflow queue of SPILL holds, 0 for 64 times the capacity
+     */
+    @Builder
+    public AsyncLogSink(LogSink delegate, int capacity, OverflowPolicy overflowPolicy, int overflowCapacity) {
+        this.delegate = Objects.requireNonNull(delegate, "NULL is not permitted as value for delegate.");
+        this.ring = new String[capacity > 0 ? capacity : DEFAULT_CAPACITY];
+        this.overflowCapacity = overflowCapacity > 0 ? overflowCapacity : OVERFLOW_CAPACITY_FACTOR * ring.length;
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.BLOCK;
+        this.writer = new Thread(this::drain, "shell-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void write(String text) {
+        lock.lock();
+        try {
+            checkOpen();
+            if (size == ring.length || !overflow.isEmpty()) {
+                switch (overflowPolicy) {
+                    case DROP:
+                        droppedRecords.increment();
+                        return;
+                    case SPILL:
+                        if (overflow.size() == overflowCapacity) {
+                            droppedRecords.increment();
+                            return;
+                        }
+                        // once records are spilled, later ones have to queue behind them
+                        overflow.add(text);
+                        spilledRecords.increment();
+                        accepted();
+                        return;
+                    default:
+                        while (size == ring.length && !closed) {
+                            notFull.awaitUninterruptibly();
+                        }
+                        checkOpen();
+                        break;
+                }
+            }
+            ring[(head + size) % ring.length] = text;
+            size++;
+            accepted();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            long target = acceptedRecords;
+            while (writtenRecords < target && writer.isAlive()) {
+                written.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        checkFailure();
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+        checkFailure();
+    }
+
+    @Override
+    public long getDroppedRecords() {
+        return droppedRecords.sum() + delegate.getDroppedRecords();
+    }
+
+    /**
+     * @return number of records that did not fit into the ring buffer and were queued in the overflow queue
+     */
+    public long getSpilledRecords() {
+        return spilledRecords.sum();
+    }
+
+    @Override
+    public String toString() {
+        return delegate + " (" + overflowPolicy.name().toLowerCase(Locale.ROOT) + ")";
+    }
+
+    // #################################################################################################################
+    private void accepted() {
+        acceptedRecords++;
+        notEmpty.signal();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new ShellException("Log is closed");
+        }
+    }
+
+    private void checkFailure() {
+        RuntimeException ex = failure;
+        if (ex != null) {
+            failure = null;
+            throw new ShellException("Writing the log failed", ex);
+        }
+    }
+
+    /**
+     * Loop of the writer thread, ends when the sink is closed and everything is written.
+     */
+    private void drain() {
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            long count = 0;
+            lock.lock();
+            try {
+                while (size == 0 && overflow.isEmpty() && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (size == 0 && overflow.isEmpty()) {
+                    return;
+                }
+                batch.setLength(0);
+                for (; size > 0; size--, count++) {
+                    batch.append(ring[head]);
+                    ring[head] = null;
+                    head = (head + 1) % ring.length;
+                }
+                String text;
+                while ((text = overflow.poll()) != null) {
+                    batch.append(text);
+                    count++;
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                delegate.write(batch.toString());
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+
+            lock.lock();
+            try {
+                writtenRecords += count;
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
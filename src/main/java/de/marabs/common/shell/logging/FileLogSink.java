@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.logging;
+
+import de.marabs.common.shell.exception.ShellException;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the log synchronously to a file through a FileChannel.
+ * An existing file is truncated, like a PrintStream opened on the file name would do.
+ *
+ * @author Martin Absmeier
+ */
+public class FileLogSink implements LogSink {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Getter
+    private final Path file;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * Number of bytes written to the file.
+     */
+    @Getter
+    private long size = 0;
+
+    public FileLogSink(Path file) throws IOException {
+        this(file, Charset.defaultCharset());
+    }
+
+    public FileLogSink(Path file, Charset charset) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public synchronized void write(String text) {
+        try {
+            CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    writeBuffer();
+                }
+            } while (result.isOverflow());
+            while (encoder.flush(buffer).isOverflow()) {
+                writeBuffer();
+            }
+            writeBuffer();
+        } catch (IOException ex) {
+            throw new ShellException("Can not write log file " + file, ex);
+        }
+    }
+
+    /**
+     * Records are written to the channel immediately, so there is nothing to flush.
+     */
+    @Override
+    public void flush() {
+        // nothing buffered
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new ShellException("Can not close log file " + file, ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    // #################################################################################################################
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        size += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.logging;
+
+import java.io.Closeable;
+
+/**
+ * Destination of the session log written by ConsoleIO.
+ * Records are written in the order they are passed to {@link #write(String)}.
+ *
+ * @author Martin Absmeier
+ */
+public interface LogSink extends Closeable {
+
+    /**
+     * Writes a record, i.e. a chunk of the session log.
+     *
+     * @param text the text of the record
+     */
+    void write(String text);
+
+    /**
+     * Blocks until all records written so far are passed on to the underlying storage.
+     */
+    void flush();
+
+    /**
+     * Flushes the sink and releases its resources.
+     */
+    @Override
+    void close();
+
+    /**
+     * @return number of records which were discarded instead of written
+     */
+    default long getDroppedRecords() {
+        return 0;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.logging;
+
+/**
+ * What {@link AsyncLogSink} does with a record if its ring buffer is full.
+ *
+ * @author Martin Absmeier
+ */
+public enum OverflowPolicy {
+    /**
+     * The writing thread waits until the background writer made room, nothing is lost.
+     */
+    BLOCK,
+    /**
+     * The record is discarded and counted as dropped, the writing thread never waits.
+     */
+    DROP,
+    /**
+     * The record is queued in a bounded overflow queue behind the ring buffer, the writing thread never waits.
+     * Bursts larger than the ring buffer are not lost, but if the storage stays slower than the shell the
+     * records exceeding the overflow queue are discarded and counted as dropped, so memory stays bounded.
+     */
+    SPILL
+}
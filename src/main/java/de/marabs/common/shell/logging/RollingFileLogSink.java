@@ -0,0 +1,315 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.logging;
+
+import de.marabs.common.shell.exception.ShellException;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the log to a file which is rotated when it reaches a size and/or after a time interval.
+ * <p>
+ * The file is renamed to a segment named after the file and the time of rotation
+ * (e.g. {@code shell.log.20221017-153000-1}), writing continues in a new file. Rotated segments are compressed with gzip by a background thread and
+ * only the newest segments are kept. A non empty file found when the sink is opened is rotated first, so the log of
+ * a previous session is kept too.
+ *
+ * @author Martin Absmeier
+ */
+@Getter
+public class RollingFileLogSink implements LogSink {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int DEFAULT_MAX_SEGMENTS = 7;
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final DateTimeFormatter SEGMENT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss", Locale.ROOT);
+
+    private final Path file;
+    private final long maxSize;
+    private final Duration interval;
+    private final int maxSegments;
+    private final boolean compress;
+    private final Charset charset;
+    private final Clock clock;
+    @Getter(AccessLevel.NONE)
+    private final ExecutorService compressor;
+    @Getter(AccessLevel.NONE)
+    private FileLogSink current;
+    @Getter(AccessLevel.NONE)
+    private long nextRotation;
+    @Getter(AccessLevel.NONE)
+    private int sequence = 0;
+
+    /**
+     * Opens the log file.
+     *
+     * @param file        the file written to, rotated segments are created next to it
+     * @param maxSize     size in bytes after which the file is rotated, 0 for no limit
+     * @param interval    time after which the file is rotated, null for no limit
+     * @param maxSegments number of rotated segments kept, 0 for the default of 7
+     * @param compress    true to compress rotated segments with gzip
+     * @param charset     the charset of the file, null for the default charset
+     * @param clock       clock for the time based rotation, null for the system clock
+     * @throws IOException if the file can not be opened
+     */
+    @Builder
+    public RollingFileLogSink(Path file, long maxSize, Duration interval, int maxSegments, boolean compress,
+                              Charset charset, Clock clock) throws IOException {
+        this.file = Objects.requireNonNull(file, "NULL is not permitted as value for file.").toAbsolutePath();
+        this.maxSize = Math.max(0, maxSize);
+        this.interval = interval != null && !interval.isZero() && !interval.isNegative() ? interval : null;
+        this.maxSegments = maxSegments > 0 ? maxSegments : DEFAULT_MAX_SEGMENTS;
+        this.compress = compress;
+        this.charset = charset != null ? charset : Charset.defaultCharset();
+        this.clock = clock != null ? clock : Clock.systemDefaultZone();
+        this.compressor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shell-log-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (Files.isRegularFile(this.file) && Files.size(this.file) > 0) {
+            rotateFile();
+        }
+        open();
+    }
+
+    /**
+     * Creates a sink from a rotation specification: comma separated {@code size=<n>[B|KB|MB|GB]},
+     * {@code every=<n>[s|m|h|d]}, {@code keep=<n>} and {@code gzip=<true|false>}, e.g. {@code size=10MB,keep=5}.
+     * Segments are compressed unless gzip=false is given.
+     *
+     * @param file     the file written to
+     * @param rotation the rotation specification
+     * @return the sink
+     * @throws IOException if the file can not be opened
+     */
+    public static RollingFileLogSink forSpecification(Path file, String rotation) throws IOException {
+        RollingFileLogSinkBuilder builder = builder().file(file).compress(true);
+        for (String part : rotation.split(",")) {
+            String[] keyAndValue = part.trim().split("=", 2);
+            if (keyAndValue.length != 2) {
+                throw new IllegalArgumentException("Expected key=value in rotation specification: " + part);
+            }
+            String value = keyAndValue[1].trim().toUpperCase(Locale.ROOT);
+            switch (keyAndValue[0].trim().toLowerCase(Locale.ROOT)) {
+                case "size":
+                    builder.maxSize(parseSize(value));
+                    break;
+                case "every":
+                    builder.interval(parseDuration(value));
+                    break;
+                case "keep":
+                    builder.maxSegments(Integer.parseInt(value));
+                    break;
+                case "gzip":
+                    builder.compress(Boolean.parseBoolean(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown key in rotation specification: " + keyAndValue[0]);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public synchronized void write(String text) {
+        if (isRotationDue()) {
+            rotate();
+        }
+        current.write(text);
+    }
+
+    @Override
+    public synchronized void flush() {
+        current.flush();
+    }
+
+    /**
+     * Closes the file and waits until the rotated segments are compressed.
+     */
+    @Override
+    public synchronized void close() {
+        current.close();
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    // #################################################################################################################
+    private boolean isRotationDue() {
+        return current.getSize() > 0
+            && ((maxSize > 0 && current.getSize() >= maxSize) || (interval != null && clock.millis() >= nextRotation));
+    }
+
+    private void rotate() {
+        current.close();
+        try {
+            rotateFile();
+            open();
+        } catch (IOException ex) {
+            throw new ShellException("Can not rotate log file " + file, ex);
+        }
+    }
+
+    private void open() throws IOException {
+        current = new FileLogSink(file, charset);
+        if (interval != null) {
+            nextRotation = clock.millis() + interval.toMillis();
+        }
+    }
+
+    private void rotateFile() throws IOException {
+        String time = LocalDateTime.now(clock).format(SEGMENT_TIME);
+        Path segment;
+        do {
+            segment = file.resolveSibling(file.getFileName() + "." + time + "-" + (++sequence));
+        } while (Files.exists(segment) || Files.exists(segment.resolveSibling(segment.getFileName() + GZIP_SUFFIX)));
+        Path rotated = segment;
+        Files.move(file, rotated);
+        compressor.execute(() -> {
+            if (compress) {
+                compress(rotated);
+            }
+            deleteOldSegments();
+        });
+    }
+
+    /**
+     * Compresses the segment streaming, the uncompressed segment is deleted when the compressed one is complete.
+     */
+    private void compress(Path segment) {
+        Path compressed = segment.resolveSibling(segment.getFileName() + GZIP_SUFFIX);
+        Path partial = segment.resolveSibling(segment.getFileName() + GZIP_SUFFIX + ".part");
+        try {
+            try (InputStream in = Files.newInputStream(segment);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), BUFFER_SIZE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            Files.move(partial, compressed, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(segment);
+        } catch (IOException ex) {
+            // the segment stays uncompressed
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // nothing more to do
+            }
+        }
+    }
+
+    /**
+     * Deletes all but the newest maxSegments segments, segment names sort by time of rotation.
+     */
+    private void deleteOldSegments() {
+        String prefix = file.getFileName() + ".";
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.getParent(), entry -> isSegment(entry, prefix))) {
+            stream.forEach(segments::add);
+            Collections.sort(segments, (a, b) -> segmentKey(a, prefix).compareTo(segmentKey(b, prefix)));
+            for (int i = 0; i < segments.size() - maxSegments; i++) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        } catch (IOException ex) {
+            // old segments are deleted after the next rotation
+        }
+    }
+
+    private static boolean isSegment(Path entry, String prefix) {
+        String name = entry.getFileName().toString();
+        return name.startsWith(prefix) && !name.endsWith(".part") && name.substring(prefix.length()).matches("\\d{8}-\\d{6}-\\d+(\\.gz)?");
+    }
+
+    /**
+     * Sort key of a segment: its time and sequence number, the sequence number padded so that 10 sorts after 9.
+     */
+    private static String segmentKey(Path segment, String prefix) {
+        String name = segment.getFileName().toString().substring(prefix.length());
+        if (name.endsWith(GZIP_SUFFIX)) {
+            name = name.substring(0, name.length() - GZIP_SUFFIX.length());
+        }
+        int dash = name.lastIndexOf('-');
+        return name.substring(0, dash) + String.format("%010d", Long.parseLong(name.substring(dash + 1)));
+    }
+
+    private static long parseSize(String value) {
+        long factor = 1;
+        String number = value;
+        if (value.endsWith("GB")) {
+            factor = 1L << 30;
+        } else if (value.endsWith("MB")) {
+            factor = 1L << 20;
+        } else if (value.endsWith("KB")) {
+            factor = 1L << 10;
+        }
+        if (factor > 1) {
+            number = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("B")) {
+            number = value.substring(0, value.length() - 1);
+        }
+        return Long.parseLong(number.trim()) * factor;
+    }
+
+    private static Duration parseDuration(String value) {
+        long amount = Long.parseLong(value.substring(0, value.length() - 1).trim());
+        switch (value.charAt(value.length() - 1)) {
+            case 'S':
+                return Duration.ofSeconds(amount);
+            case 'M':
+                return Duration.ofMinutes(amount);
+            case 'H':
+                return Duration.ofHours(amount);
+            case 'D':
+                return Duration.ofDays(amount);
+            default:
+                throw new IllegalArgumentException("Expected a duration like 30s, 15m, 1h or 1d: " + value);
+        }
+    }
+}
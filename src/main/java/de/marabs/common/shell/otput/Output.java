@@ -33,4 +33,10 @@ public interface Output {
 
     void outputHeader(String text);
 
+    /**
+     * Writes buffered output, called by the shell when a command is completed.
+     */
+    default void flush() {
+    }
+
 }
\ No newline at end of file
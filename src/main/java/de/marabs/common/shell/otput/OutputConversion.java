@@ -21,7 +21,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Set;
 
 import static java.util.Objects.isNull;
 
@@ -31,7 +31,8 @@ import static java.util.Objects.isNull;
  * As with InputConversion, it can automatically retrieve all converters declared inside
  * an object.
  * <p>
- * All converters are applied to all objects, first-registered--last-applied.
+ * All converters are applied to all objects, first-registered--last-applied. A converter declaring its supported
+ * types is skipped for objects of other classes, which converters apply is cached per class of the object.
  * <p>
  * Used by Shell.
  *
@@ -40,24 +41,54 @@ import static java.util.Objects.isNull;
 public class OutputConversion {
 
     private final List<OutputConverter> outputConverters = new ArrayList<>();
+    private OutputConverter[] applicationOrder = new OutputConverter[0];
+    private ClassValue<int[]> routes = newRoutes();
+    private int[] nullRoute = {0};
 
     public void addConverter(OutputConverter converter) {
         if (isNull(converter)) {
             throw new IllegalArgumentException("Converter == null");
         }
         outputConverters.add(converter);
+        convertersChanged();
     }
 
     public boolean removeConverter(OutputConverter converter) {
-        return outputConverters.remove(converter);
+        boolean removed = outputConverters.remove(converter);
+        if (removed) {
+            convertersChanged();
+        }
+        return removed;
+    }
+
+    /**
+     * @return true if no converter is registered, i.e. every object is output as it is
+     */
+    public boolean isEmpty() {
+        return outputConverters.isEmpty();
+    }
+
+    /**
+     * @param type Class of objects
+     * @return true if a converter may convert objects of the class
+     */
+    public boolean hasConvertersFor(Class<?> type) {
+        return routes.get(type)[0] < applicationOrder.length;
     }
 
     public Object convertOutput(Object anObject) {
+        if (outputConverters.isEmpty()) {
+            return anObject;
+        }
+        OutputConverter[] converters = applicationOrder; // last in --- first called.
         Object convertedOutput = anObject;
-        for (ListIterator<OutputConverter> it = outputConverters.listIterator(outputConverters.size()); it.hasPrevious(); ) {
-            OutputConverter outputConverter = it.previous(); // last in --- first called.
-            Object conversionResult = outputConverter.convertOutput(convertedOutput);
+        int[] route = isNull(anObject) ? nullRoute : routes.get(anObject.getClass());
+        for (int i = route[0]; i < converters.length; i = route[i + 1]) {
+            Object conversionResult = converters[i].convertOutput(convertedOutput);
             if (conversionResult != null) {
+                if (isNull(convertedOutput) || conversionResult.getClass() != convertedOutput.getClass()) {
+                    route = routes.get(conversionResult.getClass());
+                }
                 convertedOutput = conversionResult;
             }
         }
@@ -82,4 +113,56 @@ public class OutputConversion {
             }
         }
     }
-}
\ No newline at end of file
+
+    // #################################################################################################################
+    private void convertersChanged() {
+        int size = outputConverters.size();
+        applicationOrder = new OutputConverter[size];
+        for (int i = 0; i < size; i++) {
+            applicationOrder[i] = outputConverters.get(size - 1 - i);
+        }
+        routes = newRoutes();
+        nullRoute = routeOf(null);
+    }
+
+    /**
+     * The route of a class tells for every position in the application order the position of the next converter
+     * applying to the class, or the number of converters if there is none.
+     */
+    private ClassValue<int[]> newRoutes() {
+        return new ClassValue<>() {
+            @Override
+            protected int[] computeValue(Class<?> type) {
+                return routeOf(type);
+            }
+        };
+    }
+
+    private int[] routeOf(Class<?> type) {
+        OutputConverter[] converters = applicationOrder;
+        int[] route = new int[converters.length + 1];
+        route[converters.length] = converters.length;
+        for (int i = converters.length - 1; i >= 0; i--) {
+            route[i] = appliesTo(converters[i], type) ? i : route[i + 1];
+        }
+        return route;
+    }
+
+    /**
+     * @param type Class of the object, null for null which is only fed to converters without supported types
+     */
+    private static boolean appliesTo(OutputConverter converter, Class<?> type) {
+        Set<Class<?>> supportedTypes = converter.getSupportedTypes();
+        if (supportedTypes.isEmpty()) {
+            return true;
+        } else if (isNull(type)) {
+            return false;
+        }
+        for (Class<?> supportedType : supportedTypes) {
+            if (supportedType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
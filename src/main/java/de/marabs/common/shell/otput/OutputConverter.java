@@ -15,6 +15,9 @@
  */
 package de.marabs.common.shell.otput;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * This interface is used by the Shell to support new return types.
  * It converts objects to other objects (usually strings) that will be displayed.
@@ -33,4 +36,14 @@ public interface OutputConverter {
      * Do not return default toString() !!
      */
     Object convertOutput(Object toBeFormatted);
+
+    /**
+     * The classes this converter applies to, OutputConversion only feeds it instances of these classes and their
+     * subclasses.
+     *
+     * @return the supported classes, an empty set if the converter has to be fed every object
+     */
+    default Set<Class<?>> getSupportedTypes() {
+        return Collections.emptySet();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.processor;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.annotation.CommandParameter;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Annotation processor generating a {@code CommandRegistry} for every handler class declaring {@link Command}
+ * methods, so the Shell does not need to scan the handler by reflection at runtime.
+ * <p>
+ * The registry of {@code com.acme.Outer.Inner} is {@code com.acme.Outer_Inner_CommandRegistry}. It contains the
+ * definitions of all public command methods (including inherited ones), invokers calling the methods directly and
+ * the converters declared in public CLI_INPUT_CONVERTERS... / CLI_OUTPUT_CONVERTERS... fields.
+ * <p>
+ * Only public, non abstract classes (whose enclosing classes are public as well) get a registry,
+ * all other handlers are still scanned by reflection.
+ *
+ * @author Martin Absmeier
+ */
+@SupportedAnnotationTypes("de.marabs.common.shell.annotation.Command")
+public class CommandRegistryProcessor extends AbstractProcessor {
+
+    private static final String REGISTRY_SUFFIX = "_CommandRegistry";
+    private static final String INPUT_CONVERTERS_PREFIX = "CLI_INPUT_CONVERTERS";
+    private static final String OUTPUT_CONVERTERS_PREFIX = "CLI_OUTPUT_CONVERTERS";
+    private static final String INPUT_CONVERTER_CLASS = "de.marabs.common.shell.input.InputConverter";
+    private static final String OUTPUT_CONVERTER_CLASS = "de.marabs.common.shell.otput.OutputConverter";
+
+    private final Set<String> generatedRegistries = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> handlerTypes = new LinkedHashSet<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Command.class)) {
+            if (element.getKind() == ElementKind.METHOD) {
+                handlerTypes.add((TypeElement) element.getEnclosingElement());
+            }
+        }
+
+        for (TypeElement handlerType : handlerTypes) {
+            if (isRegistryCandidate(handlerType) && generatedRegistries.add(handlerType.getQualifiedName().toString())) {
+                try {
+                    writeRegistry(handlerType);
+                } catch (IOException ex) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                                             "Can not write command registry: " + ex.getMessage(), handlerType);
+                }
+            }
+        }
+        // other processors (e.g. lombok) may be interested in @Command as well
+        return false;
+    }
+
+    // #################################################################################################################
+    private static boolean isRegistryCandidate(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        Element current = type;
+        while (current instanceof TypeElement) {
+            TypeElement currentType = (TypeElement) current;
+            if (!currentType.getModifiers().contains(Modifier.PUBLIC)
+                || currentType.getNestingKind() == NestingKind.LOCAL
+                || currentType.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            current = currentType.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void writeRegistry(TypeElement handlerType) throws IOException {
+        Elements elements = processingEnv.getElementUtils();
+
+        String packageName = elements.getPackageOf(handlerType).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(handlerType).toString();
+        String simpleBinaryName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        String registryName = simpleBinaryName.replace('$', '_') + REGISTRY_SUFFIX;
+        String handlerName = handlerType.getQualifiedName().toString();
+
+        List<ExecutableElement> commands = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(handlerType))) {
+            if (method.getModifiers().contains(Modifier.PUBLIC) && method.getAnnotation(Command.class) != null) {
+                commands.add(method);
+            }
+        }
+        List<VariableElement> fields = ElementFilter.fieldsIn(elements.getAllMembers(handlerType));
+
+        String qualifiedRegistryName = packageName.isEmpty() ? registryName : packageName + "." + registryName;
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedRegistryName, handlerType).openWriter())) {
+            out.println("// Generated by " + getClass().getName() + ", do not edit.");
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+            }
+            out.println();
+            out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\", \"deprecation\"})");
+            out.println("public final class " + registryName + " implements de.marabs.common.shell.CommandRegistry {");
+            out.println();
+            out.println("    private static final java.util.List<de.marabs.common.shell.CommandDefinition> COMMANDS =");
+            out.println("        java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+            for (int i = 0; i < commands.size(); i++) {
+                out.println("            command" + i + "()" + (i < commands.size() - 1 ? "," : ""));
+            }
+            out.println("        ));");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.List<de.marabs.common.shell.CommandDefinition> getCommands() {");
+            out.println("        return COMMANDS;");
+            out.println("    }");
+            out.println();
+            writeConverters(out, handlerName, fields, "getInputConverters", INPUT_CONVERTER_CLASS, INPUT_CONVERTERS_PREFIX);
+            out.println();
+            writeConverters(out, handlerName, fields, "getOutputConverters", OUTPUT_CONVERTER_CLASS, OUTPUT_CONVERTERS_PREFIX);
+            for (int i = 0; i < commands.size(); i++) {
+                out.println();
+                writeCommand(out, handlerName, commands.get(i), i);
+            }
+            out.println();
+            out.println("    private static void checkParameterCount(Object[] parameters, int count) {");
+            out.println("        if ((parameters == null ? 0 : parameters.length) != count) {");
+            out.println("            throw new IllegalArgumentException(\"wrong number of arguments\");");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private void writeConverters(PrintWriter out, String handlerName, List<VariableElement> fields, String methodName,
+                                 String converterClass, String fieldPrefix) {
+        TypeMirror converterType = processingEnv.getElementUtils().getTypeElement(converterClass).asType();
+
+        out.println("    @Override");
+        out.println("    public java.util.List<" + converterClass + "> " + methodName + "(Object handler) {");
+        out.println("        java.util.List<" + converterClass + "> converters = new java.util.ArrayList<>();");
+        for (VariableElement field : fields) {
+            TypeMirror fieldType = field.asType();
+            if (field.getModifiers().contains(Modifier.PUBLIC)
+                && field.getSimpleName().toString().startsWith(fieldPrefix)
+                && fieldType.getKind() == TypeKind.ARRAY
+                && processingEnv.getTypeUtils().isAssignable(((ArrayType) fieldType).getComponentType(), converterType)) {
+                String owner = field.getModifiers().contains(Modifier.STATIC) ? handlerName : "((" + handlerName + ") handler)";
+                out.println("        java.util.Collections.addAll(converters, " + owner + "." + field.getSimpleName() + ");");
+            }
+        }
+        out.println("        return converters;");
+        out.println("    }");
+    }
+
+    private void writeCommand(PrintWriter out, String handlerName, ExecutableElement method, int index) {
+        Elements elements = processingEnv.getElementUtils();
+        Command command = method.getAnnotation(Command.class);
+        List<? extends VariableElement> parameters = method.getParameters();
+        boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+
+        StringBuilder parameterTypes = new StringBuilder();
+        StringBuilder parameterSpecs = new StringBuilder();
+        for (int i = 0; i < parameters.size(); i++) {
+            VariableElement parameter = parameters.get(i);
+            CommandParameter annotation = parameter.getAnnotation(CommandParameter.class);
+            String parameterName = annotation != null ? annotation.name() : String.format("p%d", i + 1);
+            String parameterDescription = annotation != null ? annotation.description() : "";
+            String typeLiteral = typeName(parameter.asType()) + ".class";
+
+            parameterTypes.append(i > 0 ? ", " : "").append(typeLiteral);
+            parameterSpecs.append(i > 0 ? "," : "").append("\n                new de.marabs.common.shell.ShellCommandParameter(")
+                .append(elements.getConstantExpression(parameterName)).append(", ")
+                .append(typeLiteral).append(", ")
+                .append(elements.getConstantExpression(parameterDescription)).append(", ")
+                .append(i).append(")");
+        }
+
+        out.println("    private static de.marabs.common.shell.CommandDefinition command" + index + "() {");
+        out.println("        return de.marabs.common.shell.CommandDefinition.builder()");
+        out.println("            .declaringClass(" + handlerName + ".class)");
+        out.println("            .methodName(" + elements.getConstantExpression(method.getSimpleName().toString()) + ")");
+        out.println("            .parameterTypes(new Class<?>[]{" + parameterTypes + "})");
+        out.println("            .varArgs(" + method.isVarArgs() + ")");
+        out.println("            .returnType(" + typeName(method.getReturnType()) + ".class)");
+        out.println("            .name(" + elements.getConstantExpression(command.name()) + ")");
+        out.println("            .description(" + elements.getConstantExpression(command.description()) + ")");
+        out.println("            .shortcut(" + elements.getConstantExpression(command.shortcut()) + ")");
+        out.println("            .header(" + elements.getConstantExpression(command.header()) + ")");
+        out.println("            .parameters(new de.marabs.common.shell.ShellCommandParameter[]{" + parameterSpecs + "})");
+        out.println("            .invoker((handler, parameters) -> {");
+        out.println("                checkParameterCount(parameters, " + parameters.size() + ");");
+        if (!isStatic) {
+            out.println("                " + handlerName + " target = (" + handlerName + ") handler;");
+        }
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < parameters.size(); i++) {
+            TypeMirror type = parameters.get(i).asType();
+            out.println("                " + typeName(type) + " p" + i + " = (" + castTypeName(type) + ") parameters[" + i + "];");
+            arguments.append(i > 0 ? ", " : "").append("p").append(i);
+        }
+        String call = (isStatic ? handlerName : "target") + "." + method.getSimpleName() + "(" + arguments + ")";
+        out.println("                try {");
+        if (method.getReturnType().getKind() == TypeKind.VOID) {
+            out.println("                    " + call + ";");
+            out.println("                    return null;");
+        } else {
+            out.println("                    return " + call + ";");
+        }
+        out.println("                } catch (Throwable ex) {");
+        out.println("                    throw new java.lang.reflect.InvocationTargetException(ex);");
+        out.println("                }");
+        out.println("            })");
+        out.println("            .build();");
+        out.println("    }");
+    }
+
+    private String typeName(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String castTypeName(TypeMirror type) {
+        Types types = processingEnv.getTypeUtils();
+        if (type.getKind().isPrimitive()) {
+            return types.boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return typeName(type);
+    }
+}
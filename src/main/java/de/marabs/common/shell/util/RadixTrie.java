@@ -0,0 +1,379 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Radix trie mapping strings to values, a key can hold several values.
+ * <p>
+ * Keys sharing a prefix share the nodes of it, every edge is labeled with the characters no other key branches
+ * off from. The children of a node are kept sorted by their first character and found by binary search, so looking
+ * up a prefix takes time proportional to its length, and the keys below it are visited in sorted order.
+ * <p>
+ * The keys closest to a string are found by walking the trie with the rows of the Levenshtein distance matrix, a
+ * row computed for the characters of a path is shared by all keys below it. A branch is left as soon as no key in it
+ * can be close enough, so a search for small distances only visits a small part of the trie.
+ * <p>
+ * An instance is not thread safe.
+ *
+ * @param <V> type of the values
+ * @author Martin Absmeier
+ */
+public final class RadixTrie<V> {
+
+    private final Node<V> root = new Node<>("");
+    private int size = 0;
+
+    /**
+     * Adds a value to a key, values of the same key are kept in the order they were added.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(String key, V value) {
+        Node<V> node = root;
+        int index = 0;
+        while (index < key.length()) {
+            int childIndex = node.indexOf(key.charAt(index));
+            if (childIndex < 0) {
+                Node<V> leaf = new Node<>(key.substring(index));
+                node.insertChild(-childIndex - 1, leaf);
+                node = leaf;
+                break;
+            }
+
+            Node<V> child = node.children[childIndex];
+            int common = commonPrefixLength(child.label, key, index);
+            if (common < child.label.length()) {
+                // split the edge where the key branches off
+                Node<V> split = new Node<>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.insertChild(0, child);
+                node.children[childIndex] = split;
+                child = split;
+            }
+            node = child;
+            index += common;
+        }
+
+        if (node.values == null) {
+            node.values = new ArrayList<>(1);
+            size++;
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * @param key the key
+     * @return the values of the key, an empty list if there are none
+     */
+    public List<V> get(String key) {
+        Node<V> node = root;
+        int index = 0;
+        while (index < key.length()) {
+            int childIndex = node.indexOf(key.charAt(index));
+            if (childIndex < 0) {
+                return Collections.emptyList();
+            }
+            node = node.children[childIndex];
+            if (!key.startsWith(node.label, index)) {
+                return Collections.emptyList();
+            }
+            index += node.label.length();
+        }
+        return node.values == null ? Collections.emptyList() : Collections.unmodifiableList(node.values);
+    }
+
+    /**
+     * Visits all keys starting with a prefix in sorted order.
+     *
+     * @param prefix  the prefix, the empty string visits all keys
+     * @param visitor called with every key and every value of the key
+     */
+    public void forEachWithPrefix(String prefix, BiConsumer<String, ? super V> visitor) {
+        StringBuilder key = new StringBuilder(prefix.length() + 16);
+        Node<V> node = findPrefix(prefix, key);
+        if (node != null) {
+            visit(node, key, visitor, null);
+        }
+    }
+
+    /**
+     * @param prefix the prefix
+     * @return the values of all keys starting with the prefix, sorted by key
+     */
+    public List<V> valuesWithPrefix(String prefix) {
+        List<V> result = new ArrayList<>();
+        Node<V> node = findPrefix(prefix, null);
+        if (node != null) {
+            visit(node, null, null, result);
+        }
+        return result;
+    }
+
+    /**
+     * @param prefix the prefix
+     * @return all keys starting with the prefix in sorted order
+     */
+    public List<String> keysWithPrefix(String prefix) {
+        List<String> result = new ArrayList<>();
+        forEachWithPrefix(prefix, (key, value) -> {
+            if (result.isEmpty() || !result.get(result.size() - 1).equals(key)) {
+                result.add(key);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Finds the keys closest to a string by Levenshtein distance: the number of inserted, deleted and replaced
+     * characters turning one string into the other.
+     *
+     * @param query       the string to search for
+     * @param maxDistance largest distance of a result
+     * @param limit       maximum number of results
+     * @return the keys sorted by distance, keys at the same distance sorted alphabetically
+     */
+    public List<String> closestKeys(String query, int maxDistance, int limit) {
+        int[] firstRow = new int[query.length() + 1];
+        for (int i = 0; i < firstRow.length; i++) {
+            firstRow[i] = i;
+        }
+
+        List<List<String>> keysByDistance = new ArrayList<>(maxDistance + 1);
+        for (int i = 0; i <= maxDistance; i++) {
+            keysByDistance.add(new ArrayList<>());
+        }
+        List<Path> paths = new ArrayList<>();
+        paths.add(new Path(root, null, firstRow));
+        while (!paths.isEmpty()) {
+            Path path = paths.remove(paths.size() - 1);
+            Node<V> node = path.node;
+            int distance = path.row[query.length()];
+            if (node.values != null && distance <= maxDistance) {
+                keysByDistance.get(distance).add(path.key());
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                Node<V> child = node.children[i];
+                int[] row = path.row;
+                for (int j = 0; j < child.label.length() && row != null; j++) {
+                    row = nextRow(row, child.label.charAt(j), query, maxDistance);
+                }
+                if (row != null) {
+                    paths.add(new Path(child, path, row));
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (List<String> keys : keysByDistance) {
+            Collections.sort(keys);
+            for (int i = 0; i < keys.size() && result.size() < limit; i++) {
+                result.add(keys.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // #################################################################################################################
+
+    /**
+     * Finds the node all keys starting with the prefix are below of.
+     *
+     * @param key receives the characters of the path to the node if not null
+     * @return the node or null if no key starts with the prefix
+     */
+    private Node<V> findPrefix(String prefix, StringBuilder key) {
+        Node<V> node = root;
+        int index = 0;
+        while (index < prefix.length()) {
+            int childIndex = node.indexOf(prefix.charAt(index));
+            if (childIndex < 0) {
+                return null;
+            }
+            node = node.children[childIndex];
+            int length = Math.min(node.label.length(), prefix.length() - index);
+            if (!prefix.regionMatches(index, node.label, 0, length)) {
+                return null;
+            }
+            if (key != null) {
+                key.append(node.label);
+            }
+            index += node.label.length();
+        }
+        return node;
+    }
+
+    /**
+     * Visits the keys below a node depth first, a node's own key sorts before those of its children.
+     * The path is tracked with an explicit stack, the depth of a trie is only limited by the length of its keys.
+     */
+    private static <V> void visit(Node<V> start, StringBuilder key, BiConsumer<String, ? super V> visitor, List<V> values) {
+        Node<V>[] nodes = Node.newArray(16);
+        int[] keyLengths = new int[16];
+        int top = 0;
+        nodes[top] = start;
+        keyLengths[top++] = -1; // the key already ends with the label of the start node
+        while (top > 0) {
+            Node<V> node = nodes[--top];
+            int keyLength = keyLengths[top];
+            if (key != null && keyLength >= 0) {
+                key.setLength(keyLength);
+                key.append(node.label);
+            }
+
+            if (node.values != null) {
+                if (values != null) {
+                    values.addAll(node.values);
+                } else {
+                    String nodeKey = key.toString();
+                    for (V value : node.values) {
+                        visitor.accept(nodeKey, value);
+                    }
+                }
+            }
+
+            if (top + node.childCount > nodes.length) {
+                int capacity = Math.max(nodes.length * 2, top + node.childCount);
+                Node<V>[] grownNodes = Node.newArray(capacity);
+                System.arraycopy(nodes, 0, grownNodes, 0, top);
+                nodes = grownNodes;
+                keyLengths = Arrays.copyOf(keyLengths, capacity);
+            }
+            int childKeyLength = key == null ? 0 : key.length();
+            for (int i = node.childCount - 1; i >= 0; i--) {
+                nodes[top] = node.children[i];
+                keyLengths[top++] = childKeyLength;
+            }
+        }
+    }
+
+    /**
+     * Computes the row of the Levenshtein matrix for one more character of a key.
+     *
+     * @return the row or null if every entry exceeds maxDistance, no key continuing the path can be close enough
+     */
+    private static int[] nextRow(int[] previous, char ch, String query, int maxDistance) {
+        int[] row = new int[previous.length];
+        row[0] = previous[0] + 1;
+        int rowMinimum = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int replace = previous[i - 1] + (query.charAt(i - 1) == ch ? 0 : 1);
+            row[i] = Math.min(replace, Math.min(previous[i], row[i - 1]) + 1);
+            rowMinimum = Math.min(rowMinimum, row[i]);
+        }
+        return rowMinimum > maxDistance ? null : row;
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int length = 0;
+        while (length < max && label.charAt(length) == key.charAt(offset + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * A path from the root: its node, the path to the parent node and the row of the Levenshtein matrix.
+     * The key of the path is only created for a match.
+     */
+    private final class Path {
+        private final Node<V> node;
+        private final Path parent;
+        private final int[] row;
+
+        private Path(Node<V> node, Path parent, int[] row) {
+            this.node = node;
+            this.parent = parent;
+            this.row = row;
+        }
+
+        private String key() {
+            return parent == null ? node.label : parent.key() + node.label;
+        }
+    }
+
+    private static final class Node<V> {
+        private String label;
+        private char[] firstChars = new char[0];
+        private Node<V>[] children = newArray(0);
+        private int childCount = 0;
+        private List<V> values = null;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return index of the child whose label starts with ch, or (-(insertion point) - 1)
+         */
+        private int indexOf(char ch) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midChar = firstChars[mid];
+                if (midChar < ch) {
+                    low = mid + 1;
+                } else if (midChar > ch) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private void insertChild(int index, Node<V> child) {
+            if (childCount == children.length) {
+                int capacity = Math.max(2, childCount * 2);
+                char[] grownChars = new char[capacity];
+                Node<V>[] grownChildren = newArray(capacity);
+                System.arraycopy(firstChars, 0, grownChars, 0, childCount);
+                System.arraycopy(children, 0, grownChildren, 0, childCount);
+                firstChars = grownChars;
+                children = grownChildren;
+            }
+            System.arraycopy(firstChars, index, firstChars, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            firstChars[index] = child.label.charAt(0);
+            children[index] = child;
+            childCount++;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V>[] newArray(int length) {
+            return (Node<V>[]) new Node<?>[length];
+        }
+    }
+}
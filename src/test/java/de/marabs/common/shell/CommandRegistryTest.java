@@ -0,0 +1,119 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.annotation.CommandParameter;
+import de.marabs.common.shell.input.InputConverter;
+import de.marabs.common.shell.otput.OutputConverter;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases of the {@link CommandRegistry} generated by the CommandRegistryProcessor.
+ *
+ * @author Martin Absmeier
+ */
+public class CommandRegistryTest {
+
+    @Test
+    public void testRegistryIsGenerated() {
+        System.out.println("registryIsGenerated");
+        assertNotNull(CommandRegistries.forClass(TestHandler.class));
+        assertNull(CommandRegistries.forClass(CommandRegistryTest.class));
+    }
+
+    @Test
+    public void testRegistryName() {
+        System.out.println("registryName");
+        assertEquals("com.acme.Handler_CommandRegistry", CommandRegistries.registryName("com.acme.Handler"));
+        assertEquals("com.acme.Outer_Inner_CommandRegistry", CommandRegistries.registryName("com.acme.Outer$Inner"));
+        assertEquals("Handler_CommandRegistry", CommandRegistries.registryName("Handler"));
+    }
+
+    @Test
+    public void testDefinitionsMatchReflection() {
+        System.out.println("definitionsMatchReflection");
+        CommandRegistry registry = CommandRegistries.forClass(TestHandler.class);
+        assertEquals(2, registry.getCommands().size());
+
+        for (CommandDefinition generated : registry.getCommands()) {
+            CommandDefinition reflected = CommandDefinition.forMethod(generated.getMethod());
+            assertEquals(reflected.getMethodName(), generated.getMethodName());
+            assertArrayEquals(reflected.getParameterTypes(), generated.getParameterTypes());
+            assertEquals(reflected.isVarArgs(), generated.isVarArgs());
+            assertEquals(reflected.getReturnType(), generated.getReturnType());
+            assertEquals(reflected.getName(), generated.getName());
+            assertEquals(reflected.getDescription(), generated.getDescription());
+            assertEquals(reflected.getShortcut(), generated.getShortcut());
+            assertEquals(reflected.getHeader(), generated.getHeader());
+            for (int i = 0; i < reflected.getArity(); i++) {
+                assertEquals(reflected.getParameters()[i].getName(), generated.getParameters()[i].getName());
+                assertEquals(reflected.getParameters()[i].getDescription(), generated.getParameters()[i].getDescription());
+            }
+        }
+    }
+
+    @Test
+    public void testGeneratedInvoker() {
+        System.out.println("generatedInvoker");
+        TestHandler handler = new TestHandler();
+        Map<String, ShellCommand> commands = new HashMap<>();
+        for (CommandDefinition definition : CommandRegistries.forClass(TestHandler.class).getCommands()) {
+            commands.put(definition.getMethodName(), new ShellCommand(handler, definition, "", definition.getMethodName()));
+        }
+
+        assertEquals("hello 42", commands.get("greet").invoke(new Object[]{"hello", 42}));
+        Object result = commands.get("fail").invoke(new Object[0]);
+        assertTrue(result instanceof UnsupportedOperationException);
+    }
+
+    @Test
+    public void testDeclaredConverters() {
+        System.out.println("declaredConverters");
+        CommandRegistry registry = CommandRegistries.forClass(TestHandler.class);
+        TestHandler handler = new TestHandler();
+        assertEquals(1, registry.getInputConverters(handler).size());
+        assertSame(handler.CLI_INPUT_CONVERTERS[0], registry.getInputConverters(handler).get(0));
+        assertEquals(1, registry.getOutputConverters(handler).size());
+        assertSame(TestHandler.CLI_OUTPUT_CONVERTERS[0], registry.getOutputConverters(handler).get(0));
+    }
+
+    public static class TestHandler {
+
+        public final InputConverter[] CLI_INPUT_CONVERTERS = {
+            (original, toClass) -> null
+        };
+
+        public static final OutputConverter[] CLI_OUTPUT_CONVERTERS = {
+            toBeFormatted -> null
+        };
+
+        @Command(description = "Greets somebody", header = "Greeting")
+        public String greet(@CommandParameter(name = "greeting", description = "The greeting") String greeting, int times) {
+            return greeting + " " + times;
+        }
+
+        @Command(name = "fail-always", shortcut = "fa")
+        public void fail() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.annotation.CommandParameter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit test cases of class {@link CommandSearchIndex}.
+ *
+ * @author Martin Absmeier
+ */
+public class CommandSearchIndexTest {
+
+    private CommandTable commandTable;
+    private CommandSearchIndex index;
+
+    @Before
+    public void setUp() {
+        commandTable = new CommandTable(new DashJoinedNamer(true));
+        addCommands(new UserHandler());
+        index = new CommandSearchIndex(commandTable);
+    }
+
+    @Test
+    public void testTerms() {
+        System.out.println("terms");
+        assertEquals(Arrays.asList("select", "user", "by", "id", "42"), CommandSearchIndex.terms("selectUser by-ID (42)"));
+        assertTrue(CommandSearchIndex.terms(null).isEmpty());
+    }
+
+    @Test
+    public void testRanking() {
+        System.out.println("ranking");
+        assertEquals(Arrays.asList("delete-user", "create-user", "list-groups"), names(index.search("user", 10)));
+        assertEquals(Arrays.asList("list-groups", "delete-user"), names(index.search("groups", 10)));
+        assertEquals(Arrays.asList("create-user"), names(index.search("Login", 10)));
+        assertEquals(Arrays.asList("delete-user"), names(index.search("user", 1)));
+        assertTrue(index.search("unknown", 10).isEmpty());
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+        System.out.println("incremental update");
+        assertTrue(index.search("backup", 10).isEmpty());
+        addCommands(new BackupHandler());
+        assertEquals(Arrays.asList("backup"), names(index.search("backup", 10)));
+        assertEquals(Arrays.asList("delete-user", "create-user", "list-groups"), names(index.search("user", 10)));
+    }
+
+    private void addCommands(Object handler) {
+        for (Method method : handler.getClass().getMethods()) {
+            if (method.getAnnotation(Command.class) != null) {
+                commandTable.addMethod(method, handler, "");
+            }
+        }
+    }
+
+    private static List<String> names(List<ShellCommand> commands) {
+        List<String> names = new ArrayList<>();
+        for (ShellCommand command : commands) {
+            names.add(command.getName());
+        }
+        return names;
+    }
+
+    public static class UserHandler {
+        @Command(description = "Creates a user account")
+        public void createUser(@CommandParameter(name = "login", description = "Login of the new account") String login) {
+        }
+
+        @Command(description = "Deletes a user and removes the user from all groups")
+        public void deleteUser(String name) {
+        }
+
+        @Command(description = "Lists all groups of a user")
+        public void listGroups(@CommandParameter(name = "groups-of", description = "Name of the member") String name) {
+        }
+    }
+
+    public static class BackupHandler {
+        @Command(description = "Writes a backup")
+        public void backup() {
+        }
+    }
+}
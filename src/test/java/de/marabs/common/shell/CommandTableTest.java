@@ -0,0 +1,266 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.exception.ShellException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * JUnit test cases of class {@link CommandTable}.
+ *
+ * @author Martin Absmeier
+ */
+public class CommandTableTest {
+
+    private CommandTable commandTable;
+
+    @Before
+    public void setUp() {
+        commandTable = new CommandTable(new DashJoinedNamer(true));
+        TestHandler handler = new TestHandler();
+        for (Method method : TestHandler.class.getMethods()) {
+            if (method.getAnnotation(Command.class) != null) {
+                commandTable.addMethod(method, handler, "");
+            }
+        }
+    }
+
+    @Test
+    public void testLookupByNameAndAbbreviation() {
+        System.out.println("lookupCommand");
+        assertEquals("selectUser", commandTable.lookupCommand("select-user", 0).getMethod().getName());
+        assertEquals("selectUser", commandTable.lookupCommand("su", 0).getMethod().getName());
+        assertEquals("list", commandTable.lookupCommand("list", 3).getMethod().getName());
+        assertEquals("list", commandTable.lookupCommand("l", 1).getMethod().getName());
+    }
+
+    @Test
+    public void testLookupByArity() {
+        System.out.println("lookupCommand by arity");
+        assertEquals(0, commandTable.lookupCommand("select-user", 0).getArity());
+        assertEquals(1, commandTable.lookupCommand("select-user", 1).getArity());
+    }
+
+    @Test
+    public void testCommandsStartingWith() {
+        System.out.println("commandsStartingWith");
+        assertEquals(Arrays.asList("ambiguous", "l", "list", "select-user", "su"), commandTable.denotationsStartingWith(""));
+        assertEquals(Arrays.asList("select-user", "su"), commandTable.denotationsStartingWith("s"));
+
+        List<ShellCommand> commands = commandTable.commandsStartingWith("s");
+        assertEquals(2, commands.size());
+        for (ShellCommand command : commands) {
+            assertEquals("selectUser", command.getMethod().getName());
+        }
+        assertEquals(5, commandTable.commandsStartingWith("").size());
+        assertEquals("list", commandTable.commandsStartingWith("l").get(0).getName());
+        assertEquals(0, commandTable.commandsStartingWith("x").size());
+    }
+
+    @Test
+    public void testCommandNotFound() {
+        System.out.println("lookupCommand not found");
+        assertLookupFails("unknown", 0, ShellException.createCommandNotFound("unknown"));
+        assertLookupFails("select-user", 2, ShellException.createCommandNotFoundForArgNum("select-user", 2));
+        assertLookupFails("ambiguous", 1, ShellException.createAmbiguousCommandExc("ambiguous", 1));
+    }
+
+    @Test
+    public void testCommandsByName() {
+        System.out.println("commandsByName");
+        assertEquals(2, commandTable.commandsByName("select-user").size());
+        assertEquals(2, commandTable.commandsByName("ambiguous").size());
+        assertEquals(0, commandTable.commandsByName("unknown").size());
+    }
+
+    @Test
+    public void testSuggestions() {
+        System.out.println("suggestions");
+        try {
+            commandTable.lookupCommand("slect-user", 0);
+            fail("ShellException expected");
+        } catch (ShellException ex) {
+            assertEquals(Arrays.asList("select-user"), ex.getSuggestions());
+        }
+        assertEquals(Arrays.asList("list"), commandTable.suggestCommands("lis"));
+        assertEquals(Arrays.asList("l", "su"), commandTable.suggestCommands("s"));
+        assertEquals(0, commandTable.suggestCommands("unknown").size());
+    }
+
+    @Test
+    public void testAbbreviationsOfBulkRegistration() throws NoSuchMethodException {
+        System.out.println("addMethods");
+        CommandTable table = new CommandTable(new DashJoinedNamer(true));
+        table.addMethods(Arrays.asList(AbbreviationHandler.class.getMethod("selectUser"),
+                                       AbbreviationHandler.class.getMethod("saveUser"),
+                                       AbbreviationHandler.class.getMethod("saveUser", String.class),
+                                       AbbreviationHandler.class.getMethod("showUsers"),
+                                       AbbreviationHandler.class.getMethod("seus"),
+                                       AbbreviationHandler.class.getMethod("seUs")), new AbbreviationHandler(), "");
+
+        List<ShellCommand> commands = table.getCommandTable();
+        assertEquals("su", commands.get(0).getAbbreviation());
+        assertEquals("saus", commands.get(1).getAbbreviation());
+        assertEquals("su", commands.get(2).getAbbreviation());
+        assertEquals("shus", commands.get(3).getAbbreviation());
+        assertNull(commands.get(5).getAbbreviation());
+        assertEquals(1, table.getVersion());
+    }
+
+    @Test
+    public void testVersionOfFailedBulkRegistration() throws NoSuchMethodException {
+        System.out.println("addCommands failing");
+        CommandTable table = new CommandTable(new DashJoinedNamer(true));
+        CommandDefinition definition = CommandDefinition.forMethod(AbbreviationHandler.class.getMethod("selectUser"));
+        try {
+            table.addCommands(Arrays.asList(definition, null), new AbbreviationHandler(), "");
+            fail("NullPointerException expected");
+        } catch (NullPointerException ex) {
+            assertEquals(1, table.getCommandTable().size());
+            assertEquals(1, table.getVersion());
+        }
+        try {
+            table.addCommands(Arrays.asList((CommandDefinition) null), new AbbreviationHandler(), "");
+            fail("NullPointerException expected");
+        } catch (NullPointerException ex) {
+            assertEquals(1, table.getVersion());
+        }
+    }
+
+    @Test
+    public void testBulkRegistrationEqualsSequential() {
+        System.out.println("addHandler");
+        AbbreviationHandler handler = new AbbreviationHandler();
+        CommandTable bulk = new CommandTable(new DashJoinedNamer(true));
+        bulk.addHandler(handler, "!");
+        CommandTable sequential = new CommandTable(new DashJoinedNamer(true));
+        for (ShellCommand command : bulk.getCommandTable()) {
+            sequential.addMethod(command.getMethod(), handler, "!");
+        }
+
+        assertEquals(sequential.getCommandTable().size(), bulk.getCommandTable().size());
+        for (int i = 0; i < bulk.getCommandTable().size(); i++) {
+            assertEquals(sequential.getCommandTable().get(i).getAbbreviation(), bulk.getCommandTable().get(i).getAbbreviation());
+        }
+        assertEquals(sequential.denotationsStartingWith(""), bulk.denotationsStartingWith(""));
+    }
+
+    @Test
+    public void testLayeredTable() {
+        System.out.println("layered table");
+        Map<String, Object> handlers = new LinkedHashMap<>();
+        handlers.put("", new TestHandler());
+        CommandTable base = CommandTable.ofHandlers(new DashJoinedNamer(true), handlers);
+        assertTrue(base.consistsOf(handlers));
+        AbbreviationHandler handler = new AbbreviationHandler();
+        CommandTable layered = new CommandTable(base);
+        layered.addHandler(handlers.get(""), "");
+        layered.addHandler(handler, "");
+
+        CommandTable flat = CommandTable.ofHandlers(new DashJoinedNamer(true), handlers);
+        flat.addHandler(handler, "");
+
+        assertEquals(flat.getCommandTable().size(), layered.getCommandTable().size());
+        for (int i = 0; i < flat.getCommandTable().size(); i++) {
+            assertEquals(flat.getCommandTable().get(i).getAbbreviation(), layered.getCommandTable().get(i).getAbbreviation());
+        }
+        assertEquals(flat.denotationsStartingWith(""), layered.denotationsStartingWith(""));
+        assertEquals(flat.commandsStartingWith("s").size(), layered.commandsStartingWith("s").size());
+        assertEquals(flat.suggestCommands("slect-user"), layered.suggestCommands("slect-user"));
+        assertEquals(flat.suggestCommands("s"), layered.suggestCommands("s"));
+        assertEquals(3, layered.commandsByName("select-user").size());
+        assertEquals("selectUser", layered.lookupCommand("su", 1).getMethod().getName());
+        assertFalse(layered.consistsOf(handlers));
+
+        try {
+            base.addHandler(handler, "");
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            assertEquals(5, base.getCommandTable().size());
+        }
+    }
+
+    private void assertLookupFails(String discriminator, int argCount, ShellException expected) {
+        try {
+            commandTable.lookupCommand(discriminator, argCount);
+            fail("ShellException expected for " + discriminator);
+        } catch (ShellException ex) {
+            assertEquals(expected.getMessage(), ex.getMessage());
+        }
+    }
+
+    public static class AbbreviationHandler {
+        @Command
+        public void selectUser() {
+        }
+
+        @Command
+        public void saveUser() {
+        }
+
+        @Command
+        public void saveUser(String name) {
+        }
+
+        @Command
+        public void showUsers() {
+        }
+
+        @Command(name = "seus")
+        public void seus() {
+        }
+
+        @Command
+        public void seUs() {
+        }
+    }
+
+    public static class TestHandler {
+        @Command
+        public void selectUser() {
+        }
+
+        @Command
+        public void selectUser(String name) {
+        }
+
+        @Command
+        public void list(String... names) {
+        }
+
+        @Command(name = "ambiguous")
+        public void ambiguousInt(int value) {
+        }
+
+        @Command(name = "ambiguous")
+        public void ambiguousString(String value) {
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.exception.ShellException;
+import de.marabs.common.shell.otput.OutputConversion;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit test cases of class {@link ConsoleIO}.
+ *
+ * @author Martin Absmeier
+ */
+public class ConsoleIOTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private ByteArrayOutputStream printed;
+    private ConsoleIO consoleIO;
+    private OutputConversion outputConversion;
+
+    @Before
+    public void setUp() {
+        printed = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(printed);
+        consoleIO = new ConsoleIO(new BufferedReader(new StringReader("command")), stream, stream);
+        outputConversion = new OutputConversion();
+    }
+
+    @Test
+    public void testOutputIsBufferedUntilFlush() {
+        System.out.println("buffered until flush");
+        consoleIO.output(Arrays.asList("a", Arrays.asList(1, 2)), outputConversion);
+        assertEquals(0, printed.size());
+
+        consoleIO.flush();
+        assertEquals("a" + NL + "Collection" + NL + "\t1" + NL + "\t2" + NL, printed.toString());
+    }
+
+    @Test
+    public void testFlushBeforePrompt() {
+        System.out.println("flush before prompt");
+        consoleIO.output("result", outputConversion);
+        assertEquals("command", consoleIO.readCommand(Collections.singletonList("app")));
+        assertEquals("result" + NL + "app> ", printed.toString());
+    }
+
+    @Test
+    public void testOrderOfOutAndErr() {
+        System.out.println("order of out and err");
+        consoleIO.output("first", outputConversion);
+        consoleIO.outputException(new IllegalStateException("second"));
+        consoleIO.output("third", outputConversion);
+        consoleIO.flush();
+        assertEquals("first" + NL + "java.lang.IllegalStateException: second" + NL + "third" + NL, printed.toString());
+    }
+
+    @Test
+    public void testSuggestions() {
+        System.out.println("suggestions");
+        consoleIO.outputException(ShellException.createCommandNotFound("lst", Arrays.asList("list", "lisp")));
+        consoleIO.outputException(ShellException.createCommandNotFound("x"));
+        consoleIO.flush();
+        assertEquals("de.marabs.common.shell.exception.ShellException: Unknown command: \"lst\"" + NL +
+                         "Did you mean: list, lisp?" + NL +
+                         "de.marabs.common.shell.exception.ShellException: Unknown command: \"x\"" + NL, printed.toString());
+    }
+
+    @Test
+    public void testLazyOutput() {
+        System.out.println("lazy output");
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Stream<Object> stream = Stream.<Object>of("a", Arrays.asList(1, 2).iterator(), IntStream.range(3, 5)).onClose(() -> closed.set(true));
+        Iterable<String> iterable = () -> Arrays.asList("x", "y").iterator();
+
+        consoleIO.output(stream, outputConversion);
+        consoleIO.output(Arrays.asList(iterable, Paths.get("dir", "file")), outputConversion);
+        consoleIO.flush();
+
+        assertTrue(closed.get());
+        assertEquals("a" + NL + "Iterator" + NL + "\t1" + NL + "\t2" + NL + "Stream" + NL + "\t3" + NL + "\t4" + NL +
+                         "Iterable" + NL + "\tx" + NL + "\ty" + NL + Paths.get("dir", "file") + NL, printed.toString());
+    }
+
+    @Test
+    public void testIterableException() {
+        System.out.println("iterable exception");
+        SQLException exception = new SQLException("outer", new IllegalStateException("cause"));
+        consoleIO.output(exception, outputConversion);
+        consoleIO.flush();
+
+        // the exception and its stack trace, not the exceptions it iterates
+        StringWriter stackTrace = new StringWriter();
+        exception.printStackTrace(new PrintWriter(stackTrace, true));
+        assertEquals(exception + NL + stackTrace, printed.toString());
+    }
+
+    @Test
+    public void testLogging() throws IOException {
+        System.out.println("logging");
+        Path file = Files.createTempFile("shell", ".log");
+        try {
+            consoleIO.enableLogging(file.toString(), "spill");
+            consoleIO.output("logged", outputConversion);
+            consoleIO.outputException(new IllegalStateException("failed"));
+            assertEquals("Logging disabled", consoleIO.disableLogging());
+            consoleIO.output("not logged", outputConversion);
+            consoleIO.flush();
+
+            assertEquals("logged" + NL + "java.lang.IllegalStateException: failed" + NL,
+                         new String(Files.readAllBytes(file), Charset.defaultCharset()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFlushWhenBufferIsFull() {
+        System.out.println("flush when buffer is full");
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            numbers.add(i);
+        }
+        consoleIO.output(numbers, outputConversion);
+        int written = printed.size();
+        assertTrue(written > 0);
+
+        consoleIO.flush();
+        assertTrue(printed.size() > written);
+    }
+
+    @Test
+    public void testDeeplyNestedOutput() throws InterruptedException {
+        System.out.println("deeply nested output");
+        Object nested = "leaf";
+        for (int i = 0; i < 2_000; i++) {
+            nested = Collections.singletonList(nested);
+        }
+        Object result = nested;
+        // a small stack, which recursive output of 2000 levels would overflow
+        Thread thread = new Thread(null, () -> consoleIO.output(result, outputConversion), "output", 64 * 1024);
+        thread.start();
+        thread.join();
+        consoleIO.flush();
+        assertTrue(printed.toString().endsWith("leaf" + NL));
+    }
+
+    @Test
+    public void testReentrantOutput() {
+        System.out.println("reentrant output");
+        Iterator<String> logging = new Iterator<String>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < 2;
+            }
+
+            @Override
+            public String next() {
+                consoleIO.output(Arrays.asList("log", next), outputConversion);
+                return "element" + next++;
+            }
+        };
+        consoleIO.output(Arrays.asList(logging, "after"), outputConversion);
+        consoleIO.flush();
+        assertEquals("Iterator" + NL + "log" + NL + "0" + NL + "\telement0" + NL + "log" + NL + "1" + NL + "\telement1" + NL +
+                         "after" + NL, printed.toString());
+    }
+
+    @Test
+    public void testPrimitiveArrays() {
+        System.out.println("primitive arrays");
+        consoleIO.output(new Object[]{new int[]{1, 2}, new double[]{0.5}, new byte[]{-1}, new long[]{3L}}, outputConversion);
+        consoleIO.flush();
+        assertEquals("Array" + NL + "\t1" + NL + "\t2" + NL + "Array" + NL + "\t0.5" + NL + "Array" + NL + "\t-1" + NL +
+                         "Array" + NL + "\t3" + NL, printed.toString());
+    }
+
+    @Test
+    public void testOutputLimits() {
+        System.out.println("output limits");
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Stream<Integer> stream = Stream.iterate(0, i -> i + 1).onClose(() -> closed.set(true));
+        consoleIO.setOutputLimits(2, 2);
+
+        consoleIO.output(Arrays.asList(Arrays.asList(1, Arrays.asList(2, 3)), new int[]{4, 5, 6}, "not shown"), outputConversion);
+        consoleIO.output(stream, outputConversion);
+        consoleIO.flush();
+
+        assertTrue(closed.get());
+        assertEquals("Collection" + NL + "\t1" + NL + "\tCollection (2 elements not shown)" + NL +
+                         "Array" + NL + "\t4" + NL + "\t5" + NL + "\t... 1 more elements" + NL +
+                         "... 1 more elements" + NL + "0" + NL + "1" + NL + "... more elements" + NL, printed.toString());
+    }
+}
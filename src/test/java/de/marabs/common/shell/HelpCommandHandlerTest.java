@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit test cases of class {@link HelpCommandHandler}.
+ *
+ * @author Martin Absmeier
+ */
+public class HelpCommandHandlerTest {
+
+    private Shell shell;
+    private HelpCommandHandler help;
+
+    @Before
+    public void setUp() {
+        shell = ShellFactory.createConsoleShell("test", "Test", new CommandSearchIndexTest.UserHandler());
+        help = new HelpCommandHandler();
+        help.cliSetShell(shell);
+    }
+
+    @Test
+    public void testCachedUntilTableChanges() {
+        System.out.println("cached until table changes");
+        List<String> lines = help.listAll();
+        assertSame(lines, help.listAll());
+        assertTrue(lines.contains("cu\tcreate-user\t(login)"));
+
+        shell.addMainHandler(new CommandSearchIndexTest.BackupHandler(), "");
+        List<String> updated = help.listAll();
+        assertNotSame(lines, updated);
+        assertEquals(lines.size() + 1, updated.size());
+        for (int i = 0; i < lines.size(); i++) {
+            // the lines of the commands already in the table are not formatted again
+            assertSame(lines.get(i), updated.get(i));
+        }
+        assertTrue(help.list().contains("b\tbackup\t()"));
+    }
+
+    @Test
+    public void testGenerateHTMLHelp() throws IOException {
+        System.out.println("generateHTMLHelp");
+        Path file = Files.createTempFile("help", ".html");
+        try {
+            help.generateHTMLHelp(file.toString(), false);
+            String html = new String(Files.readAllBytes(file), Charset.defaultCharset());
+            assertTrue(html.startsWith("<html><head><title>Auto-generated command reference file</title></head><body>\n" +
+                                           "<h1>Test Command Reference</h1>\n"));
+            assertTrue(html.contains("<h2>create-user <small>(login)</small></h2>\n"));
+            assertTrue(html.contains("<tr><td><strong>login</strong></td><td>String</td><td>Login of the new account</td></tr>\n"));
+            assertTrue(html.endsWith("</table>\n</body></html>"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.exception.TokenException;
+import de.marabs.common.shell.otput.Output;
+import de.marabs.common.shell.otput.OutputConversion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases of class {@link ScriptCompiler}.
+ *
+ * @author Martin Absmeier
+ */
+public class ScriptCompilerTest {
+
+    private Shell shell;
+    private TestHandler handler;
+    private List<Object> results;
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        results = new ArrayList<>();
+        ShellConfig config = ShellConfig.builder().output(new RecordingOutput()).auxHandlers(new HashMap<>()).build();
+        shell = new Shell(config, new CommandTable(new DashJoinedNamer(true)), Arrays.asList("test"));
+        handler = new TestHandler();
+        handler.shell = shell;
+        shell.addMainHandler(handler, "");
+        directory = Files.createTempDirectory("scripts");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testCompileAndRun() throws IOException {
+        System.out.println("compile and run");
+        Path script = script("add 1 2", "", "# comment", "add 3 4", "unknown");
+        ScriptCompiler compiler = ScriptCompiler.builder().shell(shell).build();
+        CompiledScript compiled = compiler.compile(script);
+
+        assertEquals(5, compiled.getLineCount());
+        assertEquals(3, compiled.getSteps().size());
+        assertTrue(compiled.getSteps().get(0).isResolved());
+        assertFalse(compiled.getSteps().get(2).isResolved());
+
+        ScriptReport report = ScriptRunner.builder().shell(shell).build().run(compiled);
+        assertEquals(5, report.getLinesRead());
+        assertEquals(1, report.getErrorCount());
+        assertEquals(5, report.getErrors().get(0).getLineNumber());
+        assertEquals(Arrays.asList(3, 7, "error"), results);
+        assertSame(compiled, compiler.compile(script));
+    }
+
+    @Test
+    public void testChangedScriptIsCompiledAgain() throws IOException {
+        System.out.println("changed script");
+        Path script = script("add 1 2");
+        ScriptCompiler compiler = ScriptCompiler.builder().shell(shell).build();
+        CompiledScript compiled = compiler.compile(script);
+
+        Files.write(script, Arrays.asList("add 2 2"), StandardCharsets.UTF_8);
+        CompiledScript recompiled = compiler.compile(script);
+        assertNotSame(compiled, recompiled);
+        ScriptRunner.builder().shell(shell).build().run(recompiled);
+        assertEquals(Arrays.asList(4), results);
+    }
+
+    @Test
+    public void testChangedCommandTableInvalidatesPlan() throws IOException {
+        System.out.println("changed command table");
+        Path script = script("register", "other", "add 1 1");
+        ScriptCompiler compiler = ScriptCompiler.builder().shell(shell).build();
+        CompiledScript compiled = compiler.compile(script);
+        assertFalse(compiled.getSteps().get(1).isResolved());
+
+        ScriptReport report = ScriptRunner.builder().shell(shell).build().run(compiled);
+        assertTrue(report.isSuccess());
+        assertEquals(Arrays.asList("other", 2), results);
+        assertFalse(compiled.isValidFor(shell));
+        assertNotSame(compiled, compiler.compile(script));
+    }
+
+    @Test
+    public void testParametersAreNotShared() throws IOException {
+        System.out.println("parameters are not shared");
+        ScriptRunner runner = ScriptRunner.builder().shell(shell).compiler(ScriptCompiler.builder().shell(shell).build()).build();
+        Path script = script("first a b");
+        runner.run(script);
+        runner.run(script);
+        assertEquals(Arrays.asList("a", "a"), results);
+    }
+
+    @Test
+    public void testCacheFile() throws IOException {
+        System.out.println("cache file");
+        Path script = script("add 1 2", "first \"quoted \"\"text\"\"\" b");
+        Path cacheDirectory = directory.resolve("cache");
+        CompiledScript compiled = ScriptCompiler.builder().shell(shell).cacheDirectory(cacheDirectory).build().compile(script);
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            assertEquals(1, files.count());
+        }
+
+        CompiledScript loaded = ScriptCompiler.builder().shell(shell).cacheDirectory(cacheDirectory).build().compile(script);
+        assertNotSame(compiled, loaded);
+        assertEquals(compiled.getChecksum(), loaded.getChecksum());
+        assertEquals(2, loaded.getSteps().size());
+        ScriptRunner.builder().shell(shell).build().run(loaded);
+        assertEquals(Arrays.asList(3, "quoted \"text\""), results);
+    }
+
+    @Test
+    public void testExceptionWhileCompilingIsReportedWhenRun() throws IOException {
+        System.out.println("exception while compiling");
+        shell.getInputConverter().addConverter((original, toClass) -> {
+            if (original.equals("bad")) {
+                throw new IllegalArgumentException("bad input");
+            }
+            return null;
+        });
+        Path script = script("add 1 2", "first bad", "add 3 4");
+        CompiledScript compiled = ScriptCompiler.builder().shell(shell).build().compile(script);
+        assertFalse(compiled.getSteps().get(1).isResolved());
+
+        ScriptReport report = ScriptRunner.builder().shell(shell).build().run(compiled);
+        assertEquals(1, report.getErrorCount());
+        assertEquals(2, report.getErrors().get(0).getLineNumber());
+        assertEquals(Arrays.asList(3, "error", 7), results);
+    }
+
+    @Test
+    public void testDamagedCacheFile() throws IOException {
+        System.out.println("damaged cache file");
+        Path script = script("add 1 2", "add 3 4");
+        Path cacheDirectory = directory.resolve("cache");
+        ScriptCompiler.builder().shell(shell).cacheDirectory(cacheDirectory).build().compile(script);
+        Path cacheFile;
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            cacheFile = files.findFirst().get();
+        }
+        byte[] valid = Files.readAllBytes(cacheFile);
+        // magic, format, path, size, last modified, checksum and line count precede the step count
+        int stepCountOffset = 4 + 4 + 2 + script.toString().getBytes(StandardCharsets.UTF_8).length + 4 * 8;
+        int lineLengthOffset = stepCountOffset + 4 + 8;
+
+        for (int damage = 0; damage < 5; damage++) {
+            ByteBuffer damaged = ByteBuffer.wrap(valid.clone());
+            switch (damage) {
+                case 0:
+                    damaged.putInt(stepCountOffset, Integer.MAX_VALUE);
+                    break;
+                case 1:
+                    damaged.putInt(lineLengthOffset, -1);
+                    break;
+                case 2:
+                    damaged.putInt(lineLengthOffset, Integer.MAX_VALUE);
+                    break;
+                case 3:
+                    damaged.putInt(lineLengthOffset + 4 + "add 1 2".length(), 1 << 30);
+                    break;
+                default:
+                    damaged.limit(valid.length - 5);
+                    break;
+            }
+            Files.write(cacheFile, Arrays.copyOf(damaged.array(), damaged.limit()));
+
+            CompiledScript loaded = ScriptCompiler.builder().shell(shell).cacheDirectory(cacheDirectory).build().compile(script);
+            assertEquals(2, loaded.getSteps().size());
+            assertTrue("damage " + damage, Arrays.equals(valid, Files.readAllBytes(cacheFile)));
+        }
+        ScriptRunner.builder().shell(shell).build().run(script);
+        assertEquals(Arrays.asList(3, 7), results);
+    }
+
+    private Path script(String... lines) throws IOException {
+        return Files.write(Files.createTempFile(directory, "script", ".txt"), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    public static class TestHandler {
+        private Shell shell;
+
+        @Command
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Command
+        public String first(String... values) {
+            String first = values[0];
+            values[0] = "changed";
+            return first;
+        }
+
+        @Command
+        public void register() {
+            shell.addMainHandler(new OtherHandler(), "");
+        }
+    }
+
+    public static class OtherHandler {
+
+        @Command
+        public String other() {
+            return "other";
+        }
+    }
+
+    private class RecordingOutput implements Output {
+
+        @Override
+        public void output(Object obj, OutputConversion oce) {
+            results.add(obj);
+        }
+
+        @Override
+        public void outputException(String input, TokenException error) {
+            results.add("error");
+        }
+
+        @Override
+        public void outputException(Throwable e) {
+            results.add("error");
+        }
+
+        @Override
+        public void outputHeader(String text) {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.exception.TokenException;
+import de.marabs.common.shell.otput.Output;
+import de.marabs.common.shell.otput.OutputConversion;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases of class {@link ScriptRunner}.
+ *
+ * @author Martin Absmeier
+ */
+public class ScriptRunnerTest {
+
+    private Shell shell;
+    private RecordingOutput output;
+
+    @Before
+    public void setUp() {
+        output = new RecordingOutput();
+        ShellConfig config = ShellConfig.builder().output(output).auxHandlers(new HashMap<>()).build();
+        shell = new Shell(config, new CommandTable(new DashJoinedNamer(true)), Arrays.asList("test"));
+        shell.addMainHandler(new TestHandler(), "");
+    }
+
+    @Test
+    public void testRunFile() throws IOException {
+        System.out.println("run file");
+        Path script = Files.createTempFile("script", ".txt");
+        try {
+            Files.write(script, Arrays.asList("add 1 2", "# comment", "", "add 3 4"), StandardCharsets.UTF_8);
+            ScriptReport report = ScriptRunner.builder().shell(shell).build().run(script);
+
+            assertTrue(report.isSuccess());
+            assertEquals(4, report.getLinesRead());
+            assertEquals(2, report.getCommandsExecuted());
+            assertEquals(Arrays.asList("3", "7"), output.lines);
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    @Test
+    public void testContinueOnError() throws IOException {
+        System.out.println("continue on error");
+        ScriptReport report = ScriptRunner.builder().shell(shell).build().run(script("add 1 2", "add x 2", "unknown", "add 3 4"));
+
+        assertFalse(report.isSuccess());
+        assertFalse(report.isAborted());
+        assertEquals(2, report.getErrorCount());
+        assertEquals(2, report.getErrors().get(0).getLineNumber());
+        assertTrue(report.getErrors().get(0).getException() instanceof TokenException);
+        assertEquals("unknown", report.getErrors().get(1).getLine());
+        assertEquals(Arrays.asList("3", "Line 2, column 5 (x): java.lang.NumberFormatException: For input string: \"x\"",
+                                   "error", "7"), output.lines);
+    }
+
+    @Test
+    public void testFailFast() throws IOException {
+        System.out.println("fail fast");
+        ScriptRunner runner = ScriptRunner.builder().shell(shell).errorPolicy(ScriptRunner.ErrorPolicy.FAIL_FAST).build();
+        ScriptReport report = runner.run(script("add 1 2", "fail", "add 3 4"));
+
+        assertTrue(report.isAborted());
+        assertEquals(2, report.getLinesRead());
+        assertEquals(1, report.getErrorCount());
+        assertTrue(report.getErrors().get(0).getException() instanceof IllegalStateException);
+        assertEquals(Arrays.asList("3", "error"), output.lines);
+    }
+
+    @Test
+    public void testMaxRecordedErrors() throws IOException {
+        System.out.println("max recorded errors");
+        ScriptRunner runner = ScriptRunner.builder().shell(shell).output(new RecordingOutput()).maxRecordedErrors(2).build();
+        ScriptReport report = runner.run(script("fail", "fail", "fail", "fail"));
+
+        assertEquals(4, report.getErrorCount());
+        assertEquals(2, report.getErrors().size());
+        assertTrue(report.toString().endsWith("... 2 more errors"));
+        assertTrue("the shell's output must not be used", output.lines.isEmpty());
+    }
+
+    private static BufferedReader script(String... lines) {
+        return new BufferedReader(new StringReader(String.join("\n", lines)));
+    }
+
+    public static class TestHandler {
+
+        @Command
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Command
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private static class RecordingOutput implements Output {
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void output(Object obj, OutputConversion oce) {
+            lines.add(String.valueOf(oce.convertOutput(obj)));
+        }
+
+        @Override
+        public void outputException(String input, TokenException error) {
+            lines.add("error");
+        }
+
+        @Override
+        public void outputException(Throwable e) {
+            lines.add(e instanceof TokenException ? e.getMessage() : "error");
+        }
+
+        @Override
+        public void outputHeader(String text) {
+            if (text != null) {
+                lines.add(text);
+            }
+        }
+    }
+}
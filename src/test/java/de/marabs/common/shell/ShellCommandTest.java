@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.exception.ShellException;
+import de.marabs.common.shell.exception.TokenException;
+import de.marabs.common.shell.input.InputConversion;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit test cases of class {@link ShellCommand}.
+ *
+ * @author Martin Absmeier
+ */
+public class ShellCommandTest {
+
+    private final TestHandler handler = new TestHandler();
+
+    @Test
+    public void testBindToMethodHandle() throws Exception {
+        System.out.println("bind");
+        assertTrue(MethodHandleInvoker.bind(method("add", int.class, int.class)) instanceof MethodHandleInvoker);
+        assertTrue(MethodHandleInvoker.bind(method("join", String[].class)) instanceof MethodHandleInvoker);
+        assertTrue(MethodHandleInvoker.bind(method("version")) instanceof MethodHandleInvoker);
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        System.out.println("invoke");
+        assertEquals(5, command("add", int.class, int.class).invoke(new Object[]{2, 3}));
+        assertEquals("a-b", command("join", String[].class).invoke(new Object[]{new String[]{"a", "b"}}));
+        assertEquals("1.0", command("version").invoke(new Object[0]));
+        assertNull(command("reset").invoke(new Object[0]));
+        assertEquals(1, handler.resetCount);
+    }
+
+    @Test
+    public void testInvokeReturnsExceptionOfCommand() throws Exception {
+        System.out.println("invoke exception");
+        Object result = command("fail").invoke(new Object[0]);
+        assertTrue(result instanceof IllegalStateException);
+        assertEquals("failed", ((IllegalStateException) result).getMessage());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        System.out.println("statistics");
+        ShellCommand add = command("add", int.class, int.class);
+        ShellCommand fail = command("fail");
+        for (int i = 0; i < 10; i++) {
+            add.invoke(new Object[]{i, i});
+        }
+        fail.invoke(new Object[0]);
+
+        CommandStatistics statistics = add.getStatistics();
+        assertEquals(10, statistics.getInvocations());
+        assertEquals(0, statistics.getErrors());
+        assertTrue(statistics.getLatencyAtPercentile(99.0) <= statistics.getMaxLatency());
+        assertTrue(statistics.getThroughput() > 0);
+        assertEquals(1, fail.getStatistics().getErrors());
+
+        statistics.reset();
+        assertEquals(0, statistics.getInvocations());
+        assertEquals(0, statistics.getMaxLatency());
+    }
+
+    @Test
+    public void testThroughputByWallClockTime() {
+        System.out.println("throughput by wall-clock time");
+        CommandStatistics statistics = new CommandStatistics();
+        long second = TimeUnit.SECONDS.toNanos(1);
+        assertEquals(0, statistics.getThroughput(0), 0);
+        // 4 invocations of 1ms each within 2 seconds
+        for (int i = 0; i < 4; i++) {
+            statistics.record(TimeUnit.MILLISECONDS.toNanos(1), false, i * second / 2 + TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(2.0, statistics.getThroughput(2 * second), 1e-9);
+
+        statistics.reset();
+        assertEquals(0, statistics.getThroughput(3 * second), 0);
+        statistics.record(1, false, 3 * second);
+        assertEquals(1.0, statistics.getThroughput(4 * second - 1), 1e-9);
+    }
+
+    @Test
+    public void testBindArguments() throws Exception {
+        System.out.println("bind arguments");
+        InputConversion conversion = new InputConversion();
+        ShellCommand add = command("add", int.class, int.class);
+        ShellCommand join = command("join", String[].class);
+        assertArrayEquals(new Object[]{2, 3}, add.bindArguments(new TokenSpans().tokenize("add 2 3"), conversion));
+        assertArrayEquals(new Object[]{new String[]{"a", "b c"}}, join.bindArguments(new TokenSpans().tokenize("join a 'b c'"), conversion));
+        assertArrayEquals(new Object[]{new String[0]}, join.bindArguments(new TokenSpans().tokenize("join"), conversion));
+
+        conversion.addConverter((original, toClass) -> toClass == String.class ? original.toUpperCase() : null);
+        assertArrayEquals(new Object[]{new String[]{"A", "B"}}, join.bindArguments(new TokenSpans().tokenize("join a b"), conversion));
+    }
+
+    @Test(expected = TokenException.class)
+    public void testBindArgumentsWithInvalidNumber() throws Exception {
+        System.out.println("bind invalid number");
+        command("add", int.class, int.class).bindArguments(new TokenSpans().tokenize("add 2 x"), new InputConversion());
+    }
+
+    @Test(expected = ShellException.class)
+    public void testInvokeWithWrongParameterType() throws Exception {
+        System.out.println("invoke wrong parameter");
+        command("add", int.class, int.class).invoke(new Object[]{"2", 3});
+    }
+
+    @Test(expected = ShellException.class)
+    public void testInvokeWithWrongParameterCount() throws Exception {
+        System.out.println("invoke wrong parameter count");
+        command("add", int.class, int.class).invoke(new Object[]{2});
+    }
+
+    private ShellCommand command(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return new ShellCommand(handler, method(name, parameterTypes), "", name);
+    }
+
+    private static Method method(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return TestHandler.class.getMethod(name, parameterTypes);
+    }
+
+    public static class TestHandler {
+        private int resetCount = 0;
+
+        @Command
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Command
+        public String join(String... parts) {
+            return String.join("-", parts);
+        }
+
+        @Command
+        public static String version() {
+            return "1.0";
+        }
+
+        @Command
+        public void reset() {
+            resetCount++;
+        }
+
+        @Command
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell;
+
+import de.marabs.common.shell.annotation.Command;
+import de.marabs.common.shell.annotation.CommandParameter;
+import de.marabs.common.shell.exception.ShellException;
+import de.marabs.common.shell.exception.TokenException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases of class {@link Shell}.
+ *
+ * @author Martin Absmeier
+ */
+public class ShellTest {
+
+    private Shell shell;
+    private ByteArrayOutputStream printed;
+
+    @Before
+    public void setUp() {
+        printed = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(printed);
+        ConsoleIO io = new ConsoleIO(new BufferedReader(new StringReader("")), stream, stream);
+        ShellConfig config = ShellConfig.builder().input(io).output(io).auxHandlers(new HashMap<>()).build();
+        shell = new Shell(config, new CommandTable(new DashJoinedNamer(true)), Arrays.asList("test"));
+        shell.addMainHandler(new TestHandler(), "");
+        shell.getOutputConverter().addConverter(object -> object instanceof Integer ? "#" + object : null);
+    }
+
+    @Test
+    public void testExecute() {
+        System.out.println("execute");
+        ExecutionResult result = shell.execute("add 2 3");
+        assertTrue(result.isSuccess());
+        assertEquals("add", result.getCommand().getName());
+        assertArrayEquals(new Object[]{2, 3}, result.getParameters());
+        assertEquals(5, result.getReturnValue());
+        assertEquals("#5", result.getOutput());
+        assertEquals("adding 2 and 3", result.getHeader());
+        assertTrue(result.getDurationNanos() >= 0);
+        assertEquals("nothing must be printed", 0, printed.size());
+    }
+
+    @Test
+    public void testExecuteEmptyLine() {
+        System.out.println("execute empty line");
+        ExecutionResult result = shell.execute("  # comment");
+        assertTrue(result.isSuccess());
+        assertNull(result.getCommand());
+        assertNull(result.getReturnValue());
+    }
+
+    @Test
+    public void testExecuteExceptionOfCommand() {
+        System.out.println("execute exception of command");
+        ExecutionResult result = shell.execute("fail");
+        assertFalse(result.isSuccess());
+        assertTrue(result.getException() instanceof IllegalStateException);
+        assertNull(result.getReturnValue());
+    }
+
+    @Test
+    public void testExecuteReturnedException() {
+        System.out.println("execute returned exception");
+        ExecutionResult result = shell.execute("error");
+        assertTrue(result.isSuccess());
+        assertTrue(result.getReturnValue() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testExecuteUnknownCommand() {
+        System.out.println("execute unknown command");
+        ExecutionResult result = shell.execute("unknown 1");
+        assertTrue(result.getException() instanceof ShellException);
+        assertNull(result.getCommand());
+        assertSame(result.getException(), shell.getLastException());
+
+        result = shell.execute("add 1 x");
+        assertTrue(result.getException() instanceof TokenException);
+        assertEquals("add", result.getCommand().getName());
+    }
+
+    @Test
+    public void testExecuteAll() {
+        System.out.println("executeAll");
+        List<ExecutionResult> results = shell.executeAll(Arrays.asList("add 1 2", "add 3 4", "unknown", "", "add 5 6"));
+        assertEquals(5, results.size());
+        assertEquals(3, results.get(0).getReturnValue());
+        assertEquals(7, results.get(1).getReturnValue());
+        assertFalse(results.get(2).isSuccess());
+        assertNull(results.get(3).getCommand());
+        assertEquals(11, results.get(4).getReturnValue());
+
+        List<Object> values = new ArrayList<>();
+        shell.executeAll(Arrays.asList("add 1 1", "concat a b", "add 2 2"), result -> values.add(result.getOutput()));
+        assertEquals(Arrays.asList("#2", "ab", "#4"), values);
+    }
+
+    @Test
+    public void testExecuteExceptionOfConverter() {
+        System.out.println("execute exception of converter");
+        shell.getInputConverter().addConverter((original, toClass) -> {
+            if (original.equals("bad")) {
+                throw new IllegalArgumentException("bad input");
+            }
+            return null;
+        });
+        shell.getOutputConverter().addConverter(object -> {
+            if ("crash".equals(object)) {
+                throw new IllegalStateException("bad output");
+            }
+            return null;
+        });
+
+        List<ExecutionResult> results = shell.executeAll(Arrays.asList("concat bad x", "concat cra sh", "add 1 2"));
+        assertEquals("bad input", results.get(0).getException().getMessage());
+        assertEquals("bad output", results.get(1).getException().getMessage());
+        assertEquals("crash", results.get(1).getReturnValue());
+        assertTrue(results.get(1).getDurationNanos() > 0);
+        assertSame(results.get(1).getException(), shell.getLastException());
+        assertEquals(3, results.get(2).getReturnValue());
+    }
+
+    @Test
+    public void testExecuteSeesNewCommands() {
+        System.out.println("execute sees new commands");
+        assertFalse(shell.execute("other").isSuccess());
+        shell.addMainHandler(new OtherHandler(), "");
+        assertEquals("other", shell.execute("other").getReturnValue());
+    }
+
+    @Test
+    public void testCompleteCommand() {
+        System.out.println("complete command");
+        Completion completion = shell.complete("gr", 2);
+        assertEquals(0, completion.getStart());
+        assertEquals(Arrays.asList("greet"), completion.getCandidates());
+        assertEquals("greet x", completion.apply("greet") + " x");
+        assertTrue(shell.complete("", 0).getCandidates().containsAll(Arrays.asList("add", "concat", "fail", "greet")));
+        assertTrue(shell.complete("xyz", 3).isEmpty());
+    }
+
+    @Test
+    public void testCompleteParameters() {
+        System.out.println("complete parameters");
+        shell.addParameterCompleter("user", (partial, parameter) -> Arrays.asList("bob", "alice", "anna"));
+        shell.addParameterCompleter(int.class, (partial, parameter) -> Arrays.asList("1", "10", "2"));
+
+        Completion completion = shell.complete("greet a", 7);
+        assertEquals(6, completion.getStart());
+        assertEquals(Arrays.asList("alice", "anna"), completion.getCandidates());
+        assertEquals("greet alice", completion.apply("alice"));
+        assertEquals(Arrays.asList("false", "true"), shell.complete("greet bob ", 10).getCandidates());
+        assertEquals(Arrays.asList("1", "10"), shell.complete("add 1", 5).getCandidates());
+        assertEquals(Arrays.asList("1", "10", "2"), shell.complete("add 2 ", 6).getCandidates());
+        assertTrue(shell.complete("add 1 2 ", 8).isEmpty());
+        assertTrue(shell.complete("greet # a", 9).isEmpty());
+        assertEquals("completes the word before the cursor", Arrays.asList("alice", "anna"),
+                     shell.complete("greet a true", 7).getCandidates());
+    }
+
+    @Test
+    public void testSubshellsShareAuxCommands() {
+        System.out.println("subshells share aux commands");
+        Map<String, Object> auxHandlers = new HashMap<>();
+        auxHandlers.put("aux-", new OtherHandler());
+        ShellConfig config = shell.getShellConfig().createWithAddedAuxHandlers(auxHandlers);
+        Shell parent = new Shell(config, new CommandTable(new DashJoinedNamer(true)), Arrays.asList("test"));
+        parent.addMainHandler(new TestHandler(), "");
+
+        Shell first = ShellFactory.createSubshell("first", parent, "app", new TestHandler());
+        Shell second = ShellFactory.createSubshell("second", parent, "app", new TestHandler());
+        Shell nested = ShellFactory.createSubshell("nested", first, "app", new TestHandler());
+        CommandTable base = first.getCommandTable().getBase();
+        assertNotNull(base);
+        assertSame(base, second.getCommandTable().getBase());
+        assertSame(base, nested.getCommandTable().getBase());
+        assertEquals("other", nested.execute("aux-other").getReturnValue());
+        assertEquals(5, nested.execute("add 2 3").getReturnValue());
+        assertEquals(1, second.getCommandTable().commandsByName("aux-other").size());
+
+        Shell withMore = ShellFactory.createSubshell("more", parent, "app", new TestHandler(),
+                                                     Collections.singletonMap("more-", new OtherHandler()));
+        assertNotSame(base, withMore.getCommandTable().getBase());
+        assertEquals("other", withMore.execute("aux-other").getReturnValue());
+        assertEquals("other", withMore.execute("more-other").getReturnValue());
+    }
+
+    @Test
+    public void testExecuteInvalidHeader() {
+        System.out.println("execute invalid header");
+        shell.addMainHandler(new InvalidHeaderHandler(), "");
+        List<ExecutionResult> results = shell.executeAll(Arrays.asList("count 1", "add 1 2"));
+        assertTrue(results.get(0).getException() instanceof IllegalFormatException);
+        assertEquals("count", results.get(0).getCommand().getName());
+        assertEquals(3, results.get(1).getReturnValue());
+    }
+
+    @Test
+    public void testHeaderBeforeDirectOutput() {
+        System.out.println("header before direct output");
+        PrintStream systemOut = System.out;
+        System.setOut(new PrintStream(printed, true));
+        try {
+            shell.addMainHandler(new PrintingHandler(), "");
+            shell.processLine("print abc");
+        } finally {
+            System.setOut(systemOut);
+        }
+        String nl = System.lineSeparator();
+        assertEquals("HEADER abc" + nl + "direct-print" + nl + "done" + nl, printed.toString());
+    }
+
+    public static class TestHandler {
+
+        @Command(header = "adding %d and %d")
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Command
+        public String concat(String a, String b) {
+            return a + b;
+        }
+
+        @Command
+        public String greet(@CommandParameter(name = "user") String user, boolean loud) {
+            return loud ? "HELLO " + user : "hello " + user;
+        }
+
+        @Command
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+
+        @Command
+        public Throwable error() {
+            return new IllegalArgumentException("returned");
+        }
+    }
+
+    public static class PrintingHandler {
+
+        @Command(header = "HEADER %s")
+        public String print(String text) {
+            System.out.println("direct-print");
+            return "done";
+        }
+    }
+
+    public static class InvalidHeaderHandler {
+
+        @Command(header = "counting %d and %d")
+        public int count(int value) {
+            return value;
+        }
+    }
+
+    public static class OtherHandler {
+
+        @Command
+        public String other() {
+            return "other";
+        }
+    }
+}
@@ -20,6 +20,8 @@ import org.junit.Test;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TokenTest {
 
@@ -80,4 +82,60 @@ public class TokenTest {
             assertEquals(aCase, result.get(0).getString());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of TokenSpans, which must tokenize exactly like Token.tokenize.
+     */
+    @Test
+    public void testTokenSpans() {
+        System.out.println("tokenSpans");
+        String[] cases = {
+            "",
+            "aSingleToken",
+            "a b c",
+            "an's g'ri # quotation test",
+            "Shell instance = new Shell(new ShellTest(), System.out",
+            "dir \"E:\\ASG\\!dynamic\\projects\" \t-l 3492.9  ",
+            "a b c ''",
+            " \"\" ",
+            "say \"he said \"\"hi\"\"\" it''s a\"b\"c 'x''y'#comment",
+            "\"unterminated string",
+            Token.escapeString("a \"quoted\" b")
+        };
+
+        TokenSpans spans = new TokenSpans(1);
+        for (String aCase : cases) {
+            List<Token> expected = Token.tokenize(aCase);
+            spans.tokenize(aCase);
+            System.out.println("case: " + aCase);
+
+            assertEquals(expected.size(), spans.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getString(), spans.getString(i));
+                assertEquals(expected.get(i).getIndex(), spans.getStart(i));
+                assertEquals(expected.get(i).getIndex(), spans.getToken(i).getIndex());
+            }
+            assertEquals(expected, spans.toTokens());
+        }
+    }
+
+    /**
+     * Test of the span boundaries and flags of TokenSpans.
+     */
+    @Test
+    public void testTokenSpansBoundaries() {
+        System.out.println("tokenSpansBoundaries");
+        TokenSpans spans = new TokenSpans().tokenize("  add 12 'a b'");
+
+        assertEquals(3, spans.size());
+        assertEquals(2, spans.getStart(0));
+        assertEquals(5, spans.getEnd(0));
+        assertEquals(6, spans.getStart(1));
+        assertEquals(8, spans.getEnd(1));
+        assertFalse(spans.isQuoted(1));
+        assertEquals(9, spans.getStart(2));
+        assertEquals(14, spans.getEnd(2));
+        assertTrue(spans.isQuoted(2));
+        assertEquals("a b", spans.getString(2));
+    }
+}
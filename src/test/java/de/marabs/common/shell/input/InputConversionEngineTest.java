@@ -15,10 +15,21 @@
  */
 package de.marabs.common.shell.input;
 
+import de.marabs.common.shell.TokenSpans;
+import de.marabs.common.shell.exception.ShellException;
+import de.marabs.common.shell.exception.TokenException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class InputConversionEngineTest {
 
@@ -76,4 +87,108 @@ public class InputConversionEngineTest {
         otherConverter.addDeclaredConverters(this);
         assertEquals(MAGIC_INT, otherConverter.convertInput("10", Integer.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSupportedTypes() throws Exception {
+        System.out.println("testSupportedTypes");
+
+        AtomicInteger calls = new AtomicInteger();
+        InputConverter integerConverter = new InputConverter() {
+            @Override
+            public Object convertInput(String original, Class<?> toClass) {
+                calls.incrementAndGet();
+                return MAGIC_INT;
+            }
+
+            @Override
+            public Set<Class<?>> getSupportedTypes() {
+                return Collections.singleton(Integer.class);
+            }
+        };
+        converter.addConverter(integerConverter);
+        assertEquals("10", converter.convertInput("10", String.class));
+        assertEquals(0, calls.get());
+        assertEquals(MAGIC_INT, converter.convertInput("10", Integer.class));
+        assertEquals(1, calls.get());
+
+        converter.removeConverter(integerConverter);
+        assertEquals(10, converter.convertInput("10", Integer.class));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testStringConstructor() throws Exception {
+        System.out.println("testStringConstructor");
+
+        assertEquals(new BigDecimal("1.50"), converter.convertInput("1.50", BigDecimal.class));
+        assertEquals(new BigDecimal("2"), converter.convertInput("2", BigDecimal.class));
+        try {
+            converter.convertInput("x", BigDecimal.class);
+            fail("ShellException expected");
+        } catch (ShellException ex) {
+            assertEquals("Can not instantiate class: java.math.BigDecimal", ex.getMessage());
+        }
+        try {
+            converter.convertInput("x", Runnable.class);
+            fail("ShellException expected");
+        } catch (ShellException ex) {
+            assertEquals("Can not instantiate class: java.lang.Runnable", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testPrimitiveVarArgs() throws Exception {
+        System.out.println("testPrimitiveVarArgs");
+
+        TokenSpans line = new TokenSpans().tokenize("cmd 1 -2 +3 '4' 2147483647 \u0661");
+        int[] ints = (int[]) ArgumentBinder.of(converter, new Class<?>[]{int[].class}, true).bind(line)[0];
+        assertArrayEquals(new int[]{1, -2, 3, 4, Integer.MAX_VALUE, 1}, ints);
+
+        line.tokenize("cmd x 9223372036854775807 -123456789012");
+        Object[] parameters = ArgumentBinder.of(converter, new Class<?>[]{String.class, long[].class}, true).bind(line);
+        assertEquals("x", parameters[0]);
+        assertArrayEquals(new long[]{Long.MAX_VALUE, -123456789012L}, (long[]) parameters[1]);
+
+        line.tokenize("cmd 1.5 -2e3");
+        assertArrayEquals(new double[]{1.5, -2000}, (double[]) ArgumentBinder.of(converter, new Class<?>[]{double[].class}, true).bind(line)[0], 0);
+        float[] floats = (float[]) ArgumentBinder.of(converter, new Class<?>[]{float[].class}, true).bind(line)[0];
+        assertEquals("[1.5, -2000.0]", Arrays.toString(floats));
+
+        // rounding to double first and then to float would give 1.0000002
+        line.tokenize("cmd 1.00000017881393432617187499");
+        floats = (float[]) ArgumentBinder.of(converter, new Class<?>[]{float[].class}, true).bind(line)[0];
+        assertEquals(Float.toString(Float.parseFloat("1.00000017881393432617187499")), Float.toString(floats[0]));
+        assertEquals("1.0000001", Float.toString(floats[0]));
+
+        line.tokenize("cmd true TRUE \"true\" yes");
+        boolean[] booleans = (boolean[]) ArgumentBinder.of(converter, new Class<?>[]{boolean[].class}, true).bind(line)[0];
+        assertEquals("[true, true, true, false]", Arrays.toString(booleans));
+    }
+
+    @Test
+    public void testPrimitiveVarArgsError() throws Exception {
+        System.out.println("testPrimitiveVarArgsError");
+
+        TokenSpans line = new TokenSpans().tokenize("cmd 1 2147483648 3");
+        try {
+            ArgumentBinder.of(converter, new Class<?>[]{int[].class}, true).bind(line);
+            fail("TokenException expected");
+        } catch (TokenException ex) {
+            assertEquals(6, ex.getToken().getIndex());
+            assertEquals("2147483648", ex.getToken().getString());
+        }
+        line.tokenize("cmd 1.0 abc");
+        try {
+            ArgumentBinder.of(converter, new Class<?>[]{double[].class}, true).bind(line);
+            fail("TokenException expected");
+        } catch (TokenException ex) {
+            assertEquals(8, ex.getToken().getIndex());
+        }
+        try {
+            ArgumentBinder.of(converter, new Class<?>[]{float[].class}, true).bind(line);
+            fail("TokenException expected");
+        } catch (TokenException ex) {
+            assertEquals(8, ex.getToken().getIndex());
+        }
+    }
+}
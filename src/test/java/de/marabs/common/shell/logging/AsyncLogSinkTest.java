@@ -0,0 +1,187 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.logging;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases of class {@link AsyncLogSink}.
+ *
+ * @author Martin Absmeier
+ */
+public class AsyncLogSinkTest {
+
+    @Test
+    public void testOrderIsPreserved() {
+        System.out.println("order is preserved");
+        for (OverflowPolicy policy : new OverflowPolicy[]{OverflowPolicy.BLOCK, OverflowPolicy.SPILL}) {
+            RecordingSink delegate = new RecordingSink();
+            // the overflow queue holds all records, so none is dropped however slow the writer thread is
+            AsyncLogSink sink = AsyncLogSink.builder().delegate(delegate).capacity(4).overflowPolicy(policy)
+                .overflowCapacity(1000).build();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                sink.write(i + ";");
+                expected.append(i).append(';');
+            }
+            sink.flush();
+            assertEquals(expected.toString(), delegate.text());
+            sink.close();
+            assertTrue(delegate.closed);
+            assertEquals(0, sink.getDroppedRecords());
+        }
+    }
+
+    @Test
+    public void testDrop() throws InterruptedException {
+        System.out.println("drop");
+        RecordingSink delegate = new RecordingSink();
+        AsyncLogSink sink = AsyncLogSink.builder().delegate(delegate).capacity(2).overflowPolicy(OverflowPolicy.DROP).build();
+        delegate.blockNextWrite();
+        sink.write("a");
+        delegate.awaitBlockedWrite();
+        sink.write("b");
+        sink.write("c");
+        sink.write("d");
+        delegate.unblock();
+        sink.close();
+
+        assertEquals("abc", delegate.text());
+        assertEquals(1, sink.getDroppedRecords());
+    }
+
+    @Test
+    public void testSpill() throws InterruptedException {
+        System.out.println("spill");
+        RecordingSink delegate = new RecordingSink();
+        AsyncLogSink sink = AsyncLogSink.builder().delegate(delegate).capacity(2).overflowPolicy(OverflowPolicy.SPILL).build();
+        delegate.blockNextWrite();
+        sink.write("a");
+        delegate.awaitBlockedWrite();
+        for (String text : new String[]{"b", "c", "d", "e"}) {
+            sink.write(text);
+        }
+        delegate.unblock();
+        sink.flush();
+
+        assertEquals("abcde", delegate.text());
+        assertEquals(2, sink.getSpilledRecords());
+        assertEquals(0, sink.getDroppedRecords());
+        sink.close();
+    }
+
+    @Test
+    public void testSpillIsBounded() throws InterruptedException {
+        System.out.println("spill is bounded");
+        RecordingSink delegate = new RecordingSink();
+        AsyncLogSink sink = AsyncLogSink.builder().delegate(delegate).capacity(2).overflowPolicy(OverflowPolicy.SPILL)
+            .overflowCapacity(3).build();
+        delegate.blockNextWrite();
+        sink.write("a");
+        delegate.awaitBlockedWrite();
+        for (String text : new String[]{"b", "c", "d", "e", "f", "g", "h"}) {
+            sink.write(text);
+        }
+        delegate.unblock();
+        sink.flush();
+
+        assertEquals("abcdef", delegate.text());
+        assertEquals(3, sink.getSpilledRecords());
+        assertEquals(2, sink.getDroppedRecords());
+        sink.close();
+    }
+
+    @Test
+    public void testFileLogSink() throws IOException {
+        System.out.println("file log sink");
+        Path file = Files.createTempFile("shell", ".log");
+        try {
+            Files.write(file, "old content".getBytes(StandardCharsets.UTF_8));
+            StringBuilder expected = new StringBuilder();
+            try (LogSink sink = new AsyncLogSink(new FileLogSink(file, StandardCharsets.UTF_8), 8, null)) {
+                for (int i = 0; i < 10_000; i++) {
+                    String text = "line " + i + " \u00e4\u00f6\u00fc\n";
+                    sink.write(text);
+                    expected.append(text);
+                }
+            }
+            assertEquals(expected.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static class RecordingSink implements LogSink {
+        private final List<String> records = new ArrayList<>();
+        private volatile CountDownLatch blocked;
+        private volatile CountDownLatch release;
+        private volatile boolean blockWrite = false;
+        private volatile boolean closed = false;
+
+        void blockNextWrite() {
+            blocked = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+            blockWrite = true;
+        }
+
+        void awaitBlockedWrite() throws InterruptedException {
+            blocked.await();
+        }
+
+        void unblock() {
+            release.countDown();
+        }
+
+        synchronized String text() {
+            return String.join("", records);
+        }
+
+        @Override
+        public void write(String text) {
+            if (blockWrite) {
+                blockWrite = false;
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                records.add(text);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.logging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases of class {@link RollingFileLogSink}.
+ *
+ * @author Martin Absmeier
+ */
+public class RollingFileLogSinkTest {
+
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("logs");
+        file = directory.resolve("shell.log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testRotateBySize() throws IOException {
+        System.out.println("rotate by size");
+        RollingFileLogSink sink = RollingFileLogSink.builder().file(file).maxSize(100).maxSegments(3).compress(true)
+            .charset(StandardCharsets.UTF_8).build();
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            String record = String.format("record %02d %s%n", i, "x".repeat(40));
+            sink.write(record);
+            all.append(record);
+        }
+        sink.close();
+
+        List<Path> segments = segments();
+        assertEquals(3, segments.size());
+        StringBuilder kept = new StringBuilder();
+        for (Path segment : segments) {
+            assertTrue(segment.getFileName().toString().endsWith(".gz"));
+            kept.append(gunzip(segment));
+        }
+        kept.append(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertTrue(all.toString().endsWith(kept.toString()));
+        assertEquals(8 * all.length() / 10, kept.length());
+    }
+
+    @Test
+    public void testRotateByTime() throws IOException {
+        System.out.println("rotate by time");
+        MutableClock clock = new MutableClock();
+        RollingFileLogSink sink = RollingFileLogSink.builder().file(file).interval(Duration.ofHours(1)).clock(clock).build();
+        sink.write("first\n");
+        clock.advance(Duration.ofMinutes(30));
+        sink.write("second\n");
+        clock.advance(Duration.ofMinutes(31));
+        sink.write("third\n");
+        sink.close();
+
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        assertEquals("first\nsecond\n", new String(Files.readAllBytes(segments.get(0)), StandardCharsets.UTF_8));
+        assertEquals("third\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExistingFileIsKept() throws IOException {
+        System.out.println("existing file is kept");
+        Files.write(file, "previous session\n".getBytes(StandardCharsets.UTF_8));
+        RollingFileLogSink sink = RollingFileLogSink.forSpecification(file, "size=1KB, keep=2");
+        sink.write("new session\n");
+        sink.close();
+
+        assertEquals(1024, sink.getMaxSize());
+        assertEquals(2, sink.getMaxSegments());
+        assertEquals("previous session\n", gunzip(segments().get(0)));
+        assertEquals("new session\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSpecification() throws IOException {
+        System.out.println("invalid specification");
+        RollingFileLogSink.forSpecification(file, "every=5x");
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> !path.equals(file)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String gunzip(Path segment) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segment))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8.name());
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.parse("2022-10-17T12:00:00Z");
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
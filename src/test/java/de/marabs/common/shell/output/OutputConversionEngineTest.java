@@ -20,7 +20,13 @@ import de.marabs.common.shell.otput.OutputConverter;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class OutputConversionEngineTest {
 
@@ -60,4 +66,30 @@ public class OutputConversionEngineTest {
         String expected = "([a])";
         assertEquals(expected, converter.convertOutput(toBeConverted));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSupportedTypes() {
+        System.out.println("supportedTypes");
+        AtomicInteger calls = new AtomicInteger();
+        converter.addConverter(new OutputConverter() {
+            @Override
+            public Object convertOutput(Object toBeFormatted) {
+                calls.incrementAndGet();
+                return "n" + toBeFormatted;
+            }
+
+            @Override
+            public Set<Class<?>> getSupportedTypes() {
+                return Collections.singleton(Number.class);
+            }
+        });
+
+        assertEquals("([b])", converter.convertOutput("b"));
+        assertEquals(0, calls.get());
+        // the string the number is converted to is passed on to the converters registered before
+        assertEquals("([n5])", converter.convertOutput(5));
+        assertEquals(1, calls.get());
+        assertTrue(converter.hasConvertersFor(Long.class));
+        assertFalse(new OutputConversion().hasConvertersFor(Long.class));
+    }
+}
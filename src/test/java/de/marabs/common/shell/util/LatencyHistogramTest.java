@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit test cases of class {@link LatencyHistogram}.
+ *
+ * @author Martin Absmeier
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Test of bucketIndex and highestValueOf, every value must lie in the range of its bucket.
+     */
+    @Test
+    public void testBuckets() {
+        System.out.println("buckets");
+        int lastIndex = -1;
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue("buckets must be consecutive", index == lastIndex || index == lastIndex + 1);
+            assertTrue(value <= LatencyHistogram.highestValueOf(index));
+            assertTrue(value > (index == 0 ? -1 : LatencyHistogram.highestValueOf(index - 1)));
+            lastIndex = index;
+        }
+        for (int shift = 6; shift < 45; shift++) {
+            long value = (1L << shift) + 12345 % (1L << shift);
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketIndex(value));
+            assertTrue("relative error must be below 1/32", (highest - value) <= value / 32);
+        }
+    }
+
+    /**
+     * Test of getValueAtPercentile method, of class LatencyHistogram.
+     */
+    @Test
+    public void testPercentiles() {
+        System.out.println("percentiles");
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(5_000_500.0, histogram.getMean(), 0.0);
+        assertWithinBucket(5_000_000, histogram.getValueAtPercentile(50.0));
+        assertWithinBucket(9_900_000, histogram.getValueAtPercentile(99.0));
+        assertWithinBucket(9_990_000, histogram.getValueAtPercentile(99.9));
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100.0));
+
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50.0));
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(expected + " <= " + actual, expected <= actual);
+        assertTrue(actual + " too far from " + expected, actual - expected <= expected / 32);
+    }
+}
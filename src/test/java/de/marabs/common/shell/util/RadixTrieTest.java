@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022 Martin Absmeier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.marabs.common.shell.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit test cases of class {@link RadixTrie}.
+ *
+ * @author Martin Absmeier
+ */
+public class RadixTrieTest {
+
+    @Test
+    public void testPutAndGet() {
+        System.out.println("put and get");
+        RadixTrie<Integer> trie = new RadixTrie<>();
+        trie.put("select-user", 1);
+        trie.put("select", 2);
+        trie.put("set", 3);
+        trie.put("select-user", 4);
+        trie.put("", 5);
+
+        assertEquals(4, trie.size());
+        assertEquals(Arrays.asList(1, 4), trie.get("select-user"));
+        assertEquals(Collections.singletonList(2), trie.get("select"));
+        assertEquals(Collections.singletonList(5), trie.get(""));
+        assertTrue(trie.get("sel").isEmpty());
+        assertTrue(trie.get("selected").isEmpty());
+    }
+
+    @Test
+    public void testPrefixQueries() {
+        System.out.println("prefix queries");
+        RadixTrie<String> trie = new RadixTrie<>();
+        for (String key : Arrays.asList("list", "l", "list-all", "help", "lister", "load")) {
+            trie.put(key, key.toUpperCase());
+        }
+
+        assertEquals(Arrays.asList("l", "list", "list-all", "lister", "load"), trie.keysWithPrefix("l"));
+        assertEquals(Arrays.asList("list", "list-all", "lister"), trie.keysWithPrefix("lis"));
+        assertEquals(Arrays.asList("LIST-ALL"), trie.valuesWithPrefix("list-"));
+        assertTrue(trie.keysWithPrefix("lx").isEmpty());
+        assertTrue(trie.keysWithPrefix("list-all-x").isEmpty());
+        assertEquals(6, trie.keysWithPrefix("").size());
+    }
+
+    /**
+     * Compares the trie with a sorted map for random keys over a small alphabet, which share many prefixes.
+     */
+    @Test
+    public void testSortedLikeTreeMap() {
+        System.out.println("sorted like TreeMap");
+        Random random = new Random(42);
+        RadixTrie<Integer> trie = new RadixTrie<>();
+        TreeMap<String, List<Integer>> expected = new TreeMap<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder key = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                key.append((char) ('a' + random.nextInt(4)));
+            }
+            trie.put(key.toString(), i);
+            expected.computeIfAbsent(key.toString(), k -> new ArrayList<>()).add(i);
+        }
+
+        assertEquals(expected.size(), trie.size());
+        for (String prefix : Arrays.asList("", "a", "ab", "dcb", "abcda")) {
+            List<String> keys = new ArrayList<>();
+            List<Integer> values = new ArrayList<>();
+            for (String key : expected.keySet()) {
+                if (key.startsWith(prefix)) {
+                    keys.add(key);
+                    values.addAll(expected.get(key));
+                }
+            }
+            assertEquals(keys, trie.keysWithPrefix(prefix));
+            assertEquals(values, trie.valuesWithPrefix(prefix));
+        }
+    }
+
+    @Test
+    public void testClosestKeys() {
+        System.out.println("closest keys");
+        RadixTrie<Integer> trie = new RadixTrie<>();
+        for (String key : Arrays.asList("list", "list-all", "lisp", "help", "load", "select-user", "su")) {
+            trie.put(key, 1);
+        }
+        trie.put("list", 2);
+
+        assertEquals(Collections.singletonList("list"), trie.closestKeys("lst", 1, 3));
+        assertEquals(Arrays.asList("lisp", "list"), trie.closestKeys("lisx", 1, 3));
+        assertEquals(Arrays.asList("list", "lisp"), trie.closestKeys("list", 1, 3));
+        assertEquals(Collections.singletonList("list"), trie.closestKeys("list", 1, 1));
+        assertEquals(Collections.singletonList("select-user"), trie.closestKeys("slect-usr", 2, 3));
+        assertTrue(trie.closestKeys("xyz", 1, 3).isEmpty());
+    }
+
+    /**
+     * Compares the search for close keys with computing the distance to every key.
+     */
+    @Test
+    public void testClosestKeysLikeLinearScan() {
+        System.out.println("closest keys like linear scan");
+        Random random = new Random(7);
+        RadixTrie<Integer> trie = new RadixTrie<>();
+        TreeMap<String, Integer> keys = new TreeMap<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder key = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                key.append((char) ('a' + random.nextInt(5)));
+            }
+            trie.put(key.toString(), i);
+            keys.put(key.toString(), i);
+        }
+
+        for (String query : Arrays.asList("abc", "eeeee", "abcdeabc", "d", "")) {
+            List<String> expected = new ArrayList<>();
+            for (int distance = 0; distance <= 2; distance++) {
+                for (String key : keys.keySet()) {
+                    if (levenshtein(key, query) == distance) {
+                        expected.add(key);
+                    }
+                }
+            }
+            assertEquals(expected, trie.closestKeys(query, 2, Integer.MAX_VALUE));
+        }
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] distances = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    distances[i][j] = i + j;
+                } else {
+                    int replace = distances[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                    distances[i][j] = Math.min(replace, Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+                }
+            }
+        }
+        return distances[a.length()][b.length()];
+    }
+}